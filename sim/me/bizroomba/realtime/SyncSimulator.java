@@ -0,0 +1,454 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.ServicesManager;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.logging.Logger;
+
+/**
+ * Runs the plugin's sync and fetch engine headless against synthetic worlds, profiles and cities,
+ * on a simulated clock and with a stub weather provider, and reports what it cost.
+ * Nothing here is shipped in the plugin jar.
+ * <p>
+ * Run it with the spigot api, json-simple and the plugin's classes on the classpath:
+ * <pre>
+ * java me.bizroomba.realtime.SyncSimulator worlds=5000 profiles=1000 cities=200 players=100 ticks=12000
+ * </pre>
+ * Options are given as {@code key=value}: worlds, profiles, cities, players, ticks,
+ * latency (ms), failure-rate (0 to 1), seed, suspend-idle, on-demand, forecast,
+ * per-minute and per-day.
+ * <p>
+ * Every scheduled task runs on the calling thread. Async tasks run once the provider's
+ * simulated latency has passed, so they never add to the measured tick cost.
+ */
+public final class SyncSimulator {
+
+    private final Map<String, String> options;
+    private final Random random;
+    private final SimClock clock = new SimClock(Instant.parse("2021-06-21T00:00:00Z").toEpochMilli());
+    private final SimScheduler scheduler = new SimScheduler();
+    private final Map<String, World> worlds = new LinkedHashMap<>();
+    private final List<Player> players = new ArrayList<>();
+    private final Map<String, Long> worldWrites = new TreeMap<>();
+    private final Map<String, Long> apiCalls = new TreeMap<>();
+    private long apiFailures = 0;
+    private long daysBackwards = 0;
+    private long events = 0;
+    private RealTimePlugin plugin;
+
+    private SyncSimulator(Map<String, String> options) {
+        this.options = options;
+        this.random = new Random(getLong("seed", 1));
+    }
+
+    /**
+     * Runs a simulation with the options given as {@code key=value} arguments and prints its report.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                System.err.println("Options must be given as key=value: " + arg);
+                System.exit(1);
+            }
+            options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+        new SyncSimulator(options).run();
+    }
+
+    private void run() throws IOException {
+        int worldCount = (int) getLong("worlds", 5000);
+        int profileCount = (int) getLong("profiles", 1000);
+        int cityCount = (int) getLong("cities", 200);
+        int playerCount = (int) getLong("players", 100);
+        long ticks = getLong("ticks", 12000);
+
+        for (int i = 0; i < worldCount; i++) {
+            String worldName = "world-" + i;
+            worlds.put(worldName, createWorld(worldName));
+        }
+        for (int i = 0; i < playerCount && worldCount > 0; i++) {
+            World world = worlds.get("world-" + random.nextInt(worldCount));
+            players.add(stub(Player.class, (method, args) -> method.equals("getWorld") ? world : null));
+        }
+
+        File dataFolder = Files.createTempDirectory("realtime-sim").toFile();
+        writeConfig(new File(dataFolder, "config.yml"), worldCount, profileCount, cityCount);
+
+        Server server = createServer();
+        Bukkit.setServer(server);
+        plugin = new RealTimePlugin(new JavaPluginLoader(server),
+                new PluginDescriptionFile("RealTime", "simulated", RealTimePlugin.class.getName()),
+                dataFolder, new File(dataFolder, "RealTime.jar"));
+        plugin.clock = clock;
+        plugin.weatherProvider = this::requestWeather;
+
+        long startNanos = System.nanoTime();
+        plugin.onRefresh();
+        long refreshNanos = System.nanoTime() - startNanos;
+
+        long[] tickNanos = new long[(int) ticks];
+        for (int tick = 0; tick < ticks; tick++) {
+            tickNanos[tick] = scheduler.runTick(tick);
+            clock.advance(50);
+        }
+        report(refreshNanos, tickNanos);
+    }
+
+    private void writeConfig(File file, int worldCount, int profileCount, int cityCount) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8))) {
+            out.println("config-autosave: false");
+            out.println("suspend-idle-worlds: " + getBoolean("suspend-idle"));
+            out.println("weather-api-key: \"simulated\"");
+            out.println("fetch-weather-on-demand: " + getBoolean("on-demand"));
+            out.println("weather-api-limits:");
+            out.println("  per-minute: " + getLong("per-minute", 60));
+            out.println("  per-day: " + getLong("per-day", 33000));
+            out.println("weather-forecast: " + getBoolean("forecast"));
+            out.println("worlds:");
+            for (int i = 0; i < worldCount && profileCount > 0; i++) {
+                out.println("  world-" + i + ": profile-" + (i % profileCount));
+            }
+            out.println("settings:");
+            for (int i = 0; i < profileCount; i++) {
+                out.println("  profile-" + i + ":");
+                out.println("    sync-time: true");
+                out.println("    speed: " + (1 + i % 4));
+                out.println("    offset: " + (i % 8) * 3000);
+                out.println("    sync-weather: " + (cityCount > 0));
+                out.println("    weather-city: \"" + (cityCount > 0 ? "city-" + (i % cityCount) : "") + "\"");
+                out.println("    solar-time: " + (i % 10 == 0));
+                out.println("    sync-moon: " + (i % 5 == 0));
+            }
+        }
+    }
+
+    /**
+     * The stub weather provider. It answers with openweathermap.org formatted data
+     * after the configured latency and fails at the configured rate.
+     */
+    private String requestWeather(String endpoint, String apiKey, String cityName) {
+        apiCalls.merge(endpoint, 1L, Long::sum);
+        if (random.nextDouble() < getDouble("failure-rate", 0.05)) {
+            apiFailures++;
+            return "";
+        }
+        String[] mains = {"Clear", "Clouds", "Rain", "Thunderstorm"};
+        int cityHash = cityName.hashCode() & 0x7FFFFFFF;
+        String coord = "\"coord\":{\"lat\":" + (cityHash % 120 - 60) + ",\"lon\":" + (cityHash % 360 - 180) + "}";
+        if (endpoint.equals("forecast")) {
+            StringBuilder list = new StringBuilder();
+            long dt = clock.millis() / 1000 / 10800 * 10800;
+            for (int i = 0; i < 40; i++) {
+                if (i > 0) list.append(',');
+                list.append("{\"dt\":").append(dt + i * 10800L)
+                        .append(",\"weather\":[{\"main\":\"").append(mains[random.nextInt(mains.length)]).append("\"}]}");
+            }
+            return "{\"list\":[" + list + "],\"city\":{" + coord + "}}";
+        }
+        return "{\"weather\":[{\"main\":\"" + mains[random.nextInt(mains.length)] + "\"}]," + coord + "}";
+    }
+
+    private void report(long refreshNanos, long[] tickNanos) {
+        long[] sorted = tickNanos.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long nanos : sorted) {
+            total += nanos;
+        }
+        int ticks = sorted.length;
+        System.out.printf("worlds=%d profiles=%s cities=%s players=%d ticks=%d (%.1f simulated minutes)%n",
+                worlds.size(), getLong("profiles", 1000), getLong("cities", 200), players.size(), ticks, ticks / 1200d);
+        System.out.printf("refresh: %.3f ms%n", refreshNanos / 1e6);
+        if (ticks > 0) {
+            System.out.printf("tick cost: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                    total / 1e6 / ticks, percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.99) / 1e6, sorted[ticks - 1] / 1e6);
+        }
+        System.out.println("world writes: " + worldWrites + ", days moved backwards: " + daysBackwards);
+        System.out.println("api calls: " + apiCalls + ", failed: " + apiFailures);
+        System.out.println("events called: " + events);
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.floor(sorted.length * fraction))];
+    }
+
+    private World createWorld(String worldName) {
+        long[] fullTime = {0};
+        return stub(World.class, (method, args) -> {
+            switch (method) {
+                case "getName":
+                    return worldName;
+                case "getFullTime":
+                    return fullTime[0];
+                case "setFullTime":
+                    // nothing in the simulation moves a clock back, so the day never should
+                    if (Math.floorDiv((Long) args[0], 24000L) < Math.floorDiv(fullTime[0], 24000L)) {
+                        daysBackwards++;
+                    }
+                    fullTime[0] = (Long) args[0];
+                    worldWrites.merge(method, 1L, Long::sum);
+                    return null;
+                case "setStorm":
+                case "setThundering":
+                    worldWrites.merge(method, 1L, Long::sum);
+                    return null;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private Server createServer() {
+        PluginManager pluginManager = stub(PluginManager.class, (method, args) -> {
+            switch (method) {
+                case "getPlugin":
+                    return "RealTime".equals(args[0]) ? plugin : null;
+                case "callEvent":
+                    events++;
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        ServicesManager servicesManager = stub(ServicesManager.class, (method, args) -> null);
+        Logger logger = Logger.getLogger("SyncSimulator");
+        return stub(Server.class, (method, args) -> {
+            switch (method) {
+                case "getPluginManager":
+                    return pluginManager;
+                case "getScheduler":
+                    return scheduler.proxy;
+                case "getServicesManager":
+                    return servicesManager;
+                case "getWorlds":
+                    return new ArrayList<>(worlds.values());
+                case "getWorld":
+                    return worlds.get((String) args[0]);
+                case "getOnlinePlayers":
+                    return Collections.unmodifiableList(players);
+                case "getLogger":
+                    return logger;
+                case "isPrimaryThread":
+                    return true;
+                case "getName":
+                case "getVersion":
+                case "getBukkitVersion":
+                    return "SyncSimulator";
+                default:
+                    return null;
+            }
+        });
+    }
+
+    /**
+     * Creates a stub of a bukkit interface. Methods the handler does not answer return null,
+     * zero or false, and stubs are only equal to themselves.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, BiFunction<String, Object[], Object> handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) return proxy == args[0];
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) return System.identityHashCode(proxy);
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) return type.getSimpleName() + "@" + System.identityHashCode(proxy);
+                    break;
+            }
+            Object result = handler.apply(method.getName(), args != null ? args : new Object[0]);
+            if (result == null && method.getReturnType().isPrimitive()) {
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) return false;
+                if (returnType == long.class) return 0L;
+                if (returnType == int.class) return 0;
+                if (returnType == double.class) return 0d;
+                if (returnType == float.class) return 0f;
+                if (returnType == short.class) return (short) 0;
+                if (returnType == byte.class) return (byte) 0;
+                if (returnType == char.class) return (char) 0;
+            }
+            return result;
+        });
+    }
+
+    private long getLong(String key, long def) {
+        String value = options.get(key);
+        return value != null ? Long.parseLong(value) : def;
+    }
+
+    private double getDouble(String key, double def) {
+        String value = options.get(key);
+        return value != null ? Double.parseDouble(value) : def;
+    }
+
+    private boolean getBoolean(String key) {
+        return Boolean.parseBoolean(options.get(key));
+    }
+
+    /**
+     * A clock that only moves when the simulation advances it.
+     */
+    private static final class SimClock extends Clock {
+
+        private long millis;
+
+        SimClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(long deltaMillis) {
+            millis += deltaMillis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.systemDefault();
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+    }
+
+    /**
+     * A single threaded scheduler driven tick by tick by the simulation.
+     */
+    private final class SimScheduler {
+
+        private final List<SimTask> tasks = new ArrayList<>();
+        private final List<SimTask> added = new ArrayList<>();
+        private final BukkitScheduler proxy = stub(BukkitScheduler.class, this::schedule);
+        private long currentTick = 0;
+
+        private Object schedule(String method, Object[] args) {
+            switch (method) {
+                case "runTask":
+                    return add(new SimTask((Runnable) args[1], currentTick + 1, -1, false));
+                case "runTaskAsynchronously":
+                    long latencyTicks = Math.max(1, (long) Math.ceil(getDouble("latency", 250) * (0.5 + random.nextDouble()) / 50));
+                    return add(new SimTask((Runnable) args[1], currentTick + latencyTicks, -1, true));
+                case "runTaskLater":
+                case "runTaskLaterAsynchronously":
+                    return add(new SimTask((Runnable) args[1], currentTick + Math.max(1, (Long) args[2]), -1, method.endsWith("Asynchronously")));
+                case "runTaskTimer":
+                case "runTaskTimerAsynchronously":
+                    return add(new SimTask((Runnable) args[1], currentTick + (Long) args[2], Math.max(1, (Long) args[3]), method.endsWith("Asynchronously")));
+                case "cancelTasks":
+                    tasks.forEach(task -> task.cancelled = true);
+                    added.clear();
+                    return null;
+                default:
+                    throw new UnsupportedOperationException("The simulator does not support BukkitScheduler." + method);
+            }
+        }
+
+        private BukkitTask add(SimTask task) {
+            added.add(task);
+            return stub(BukkitTask.class, (method, args) -> {
+                switch (method) {
+                    case "cancel":
+                        task.cancelled = true;
+                        return null;
+                    case "isCancelled":
+                        return task.cancelled;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        /**
+         * Runs the tasks that are due this tick.
+         *
+         * @return the nanoseconds spent in main thread tasks
+         */
+        long runTick(long tick) {
+            currentTick = tick;
+            tasks.addAll(added);
+            added.clear();
+            long nanos = 0;
+            for (Iterator<SimTask> it = tasks.iterator(); it.hasNext(); ) {
+                SimTask task = it.next();
+                if (task.cancelled) {
+                    it.remove();
+                    continue;
+                }
+                if (task.nextTick > tick) {
+                    continue;
+                }
+                long startNanos = System.nanoTime();
+                task.runnable.run();
+                if (!task.async) {
+                    nanos += System.nanoTime() - startNanos;
+                }
+                if (task.period > 0 && !task.cancelled) {
+                    task.nextTick = tick + task.period;
+                }
+                else {
+                    it.remove();
+                }
+            }
+            return nanos;
+        }
+    }
+
+    private static final class SimTask {
+
+        private final Runnable runnable;
+        private final long period;
+        private final boolean async;
+        private long nextTick;
+        private boolean cancelled = false;
+
+        SimTask(Runnable runnable, long nextTick, long period, boolean async) {
+            this.runnable = runnable;
+            this.nextTick = nextTick;
+            this.period = period;
+            this.async = async;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package me.bizroomba.realtime;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A circuit breaker for a weather api endpoint.
+ * After enough consecutive failures the circuit opens and requests are skipped until an
+ * exponentially growing, jittered backoff has passed. Then a single trial request is let through:
+ * its success closes the circuit and its failure opens it again for longer.
+ * This is safe to use from any thread.
+ */
+public final class CircuitBreaker {
+
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long BASE_BACKOFF_MILLIS = 60_000L;
+    private static final long MAX_BACKOFF_MILLIS = 3_600_000L;
+    private static final double JITTER = 0.2;
+
+    private int failures = 0;
+    private int opens = 0;
+    private long openUntilMillis = 0;
+    private boolean trialInFlight = false;
+
+    /**
+     * Tests if requests are currently being skipped, without claiming the trial request.
+     *
+     * @param nowMillis the current epoch millis
+     *
+     * @return true if the circuit is open
+     */
+    public synchronized boolean isOpen(long nowMillis) {
+        return openUntilMillis != 0 && (nowMillis < openUntilMillis || trialInFlight);
+    }
+
+    /**
+     * Tests if a request may be made, claiming the single trial request once the backoff has passed.
+     *
+     * @param nowMillis the current epoch millis
+     *
+     * @return true if the request may be made
+     */
+    public synchronized boolean allowRequest(long nowMillis) {
+        if (openUntilMillis == 0) {
+            return true;
+        }
+        if (nowMillis < openUntilMillis || trialInFlight) {
+            return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    /**
+     * Records a successful request, closing the circuit.
+     */
+    public synchronized void recordSuccess() {
+        failures = 0;
+        opens = 0;
+        openUntilMillis = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * Records a failed request, opening the circuit if there were too many failures in a row
+     * or if it was the trial request.
+     *
+     * @param nowMillis the current epoch millis
+     */
+    public synchronized void recordFailure(long nowMillis) {
+        failures++;
+        if (openUntilMillis != 0 || failures >= FAILURE_THRESHOLD) {
+            opens++;
+            long backoff = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(opens - 1, 16));
+            long jitter = (long) ((ThreadLocalRandom.current().nextDouble() * 2 - 1) * JITTER * backoff);
+            openUntilMillis = nowMillis + backoff + jitter;
+        }
+        trialInFlight = false;
+    }
+}
@@ -0,0 +1,76 @@
+package me.bizroomba.realtime;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects repeated warnings from any thread and logs them as a single periodic summary,
+ * so failing requests don't flood the console or schedule main thread tasks.
+ */
+public final class CoalescedWarnings {
+
+    private final Map<String, Occurrences> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Records an occurrence of a warning.
+     *
+     * @param message the warning message, which should not contain varying details
+     */
+    public void record(String message) {
+        record(message, null);
+    }
+
+    /**
+     * Records an occurrence of a warning with varying details, such as an exception message.
+     * Only the first details since the last flush are logged along with the summary.
+     *
+     * @param message the warning message, which should not contain varying details
+     * @param detail  the details of this occurrence, or null if none
+     */
+    public void record(String message, String detail) {
+        counts.merge(message, new Occurrences(1, detail), Occurrences::add);
+    }
+
+    /**
+     * Logs a summary of the warnings recorded since the last flush and forgets them.
+     * This is designed to be run asynchronously from spigot.
+     */
+    public void flush() {
+        if (counts.isEmpty()) {
+            return;
+        }
+        Map<String, Occurrences> summary = new TreeMap<>();
+        for (String message : counts.keySet()) {
+            // taken out within the map's own update, so an occurrence is either summarized now or kept for the next flush
+            counts.computeIfPresent(message, (key, occurrences) -> {
+                summary.put(key, occurrences);
+                return null;
+            });
+        }
+        for (Map.Entry<String, Occurrences> entry : summary.entrySet()) {
+            Occurrences occurrences = entry.getValue();
+            if (occurrences.detail != null) {
+                PluginCmds.warningMsg("%s (x%d): %s", entry.getKey(), occurrences.count, occurrences.detail);
+            }
+            else {
+                PluginCmds.warningMsg("%s (x%d)", entry.getKey(), occurrences.count);
+            }
+        }
+    }
+
+    private static final class Occurrences {
+
+        private final int count;
+        private final String detail;
+
+        Occurrences(int count, String detail) {
+            this.count = count;
+            this.detail = detail;
+        }
+
+        Occurrences add(Occurrences other) {
+            return new Occurrences(count + other.count, detail != null ? detail : other.detail);
+        }
+    }
+}
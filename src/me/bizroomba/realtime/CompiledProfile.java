@@ -0,0 +1,163 @@
+package me.bizroomba.realtime;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of a settings profile, compiled from the config
+ * so that syncing never has to read the config. Only its cache of the replayed weather changes.
+ */
+public final class CompiledProfile {
+
+    private final String name;
+    private final boolean syncTime;
+    private final boolean syncWeather;
+    private final String weatherCity;
+    private final LocalDate weatherReplay;
+    private final boolean hedgeWeather;
+    private final GameClock clock;
+    // the replayed weather of the minute it was last looked up for, dropped along with the profile
+    private volatile ReplayedWeather replayedWeather = null;
+
+    CompiledProfile(String name, boolean syncTime, boolean syncWeather, String weatherCity, LocalDate weatherReplay,
+                    boolean hedgeWeather, GameClock clock) {
+        this.name = Objects.requireNonNull(name);
+        this.syncTime = syncTime;
+        this.syncWeather = syncWeather;
+        this.weatherCity = Objects.requireNonNull(weatherCity);
+        this.weatherReplay = weatherReplay;
+        this.hedgeWeather = hedgeWeather;
+        this.clock = Objects.requireNonNull(clock);
+    }
+
+    /**
+     * Compiles a snapshot of the settings profile's current values.
+     *
+     * @param profile the settings profile
+     *
+     * @return the compiled profile
+     */
+    public static CompiledProfile compile(SettingsProfile profile) {
+        return new CompiledProfile(profile.getName(), profile.isSyncTime(), profile.isSyncWeather(),
+                profile.getWeatherCity(), profile.getWeatherReplay(), profile.isHedgeWeather(), GameClock.of(profile));
+    }
+
+    /**
+     * Gets the name of the profile.
+     *
+     * @return the profile name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tests if worlds with this profile have their time synchronized with the system-time.
+     *
+     * @return true if syncing time, else false
+     */
+    public boolean isSyncTime() {
+        return syncTime;
+    }
+
+    /**
+     * Tests if worlds with this profile have their weather synchronized with real life.
+     *
+     * @return true if syncing weather, else false
+     */
+    public boolean isSyncWeather() {
+        return syncWeather;
+    }
+
+    /**
+     * Gets the real life city with which weather would be synchronized with.
+     *
+     * @return a city name or empty
+     */
+    public String getWeatherCity() {
+        return weatherCity;
+    }
+
+    /**
+     * Gets the past date whose recorded weather is replayed.
+     *
+     * @return the replayed date, or null if the city's current weather is used
+     */
+    public LocalDate getWeatherReplay() {
+        return weatherReplay;
+    }
+
+    /**
+     * Tests if the weather of this profile's city is hedged with the secondary provider.
+     *
+     * @return true if hedging weather requests, else false
+     */
+    public boolean isHedgeWeather() {
+        return hedgeWeather;
+    }
+
+    /**
+     * Gets the game clock deciding the gametime of this profile.
+     *
+     * @return the game clock
+     */
+    public GameClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Gets the cached replayed weather of a minute.
+     *
+     * @param epochMinute the replayed minute, in minutes since the epoch
+     *
+     * @return the replayed weather state, or null if another minute is cached
+     */
+    WeatherState getReplayedWeather(long epochMinute) {
+        ReplayedWeather replayed = replayedWeather;
+        return replayed != null && replayed.epochMinute == epochMinute ? replayed.weather : null;
+    }
+
+    /**
+     * Caches the replayed weather of a minute, replacing the previous minute's.
+     *
+     * @param epochMinute the replayed minute, in minutes since the epoch
+     * @param weather     the replayed weather state
+     */
+    void setReplayedWeather(long epochMinute, WeatherState weather) {
+        replayedWeather = new ReplayedWeather(epochMinute, weather);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof CompiledProfile)) {
+            return false;
+        }
+        CompiledProfile other = (CompiledProfile) obj;
+        return name.equals(other.name)
+                && syncTime == other.syncTime
+                && syncWeather == other.syncWeather
+                && weatherCity.equals(other.weatherCity)
+                && Objects.equals(weatherReplay, other.weatherReplay)
+                && hedgeWeather == other.hedgeWeather
+                && clock.equals(other.clock);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, syncTime, syncWeather, weatherCity, weatherReplay, hedgeWeather, clock);
+    }
+
+    private static final class ReplayedWeather {
+
+        private final long epochMinute;
+        private final WeatherState weather;
+
+        ReplayedWeather(long epochMinute, WeatherState weather) {
+            this.epochMinute = epochMinute;
+            this.weather = weather;
+        }
+    }
+}
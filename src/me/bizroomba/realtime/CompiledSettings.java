@@ -0,0 +1,182 @@
+package me.bizroomba.realtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable snapshot of all the settings profiles and world assignments in the config.
+ * A new snapshot is compiled whenever the settings change, and it can be read from any thread.
+ */
+public final class CompiledSettings {
+
+    private final Map<String, CompiledProfile> profiles;
+    private final Map<String, String> worldProfileNames;
+    private final List<String> weatherCities;
+    private final Set<String> hedgedCities;
+
+    private CompiledSettings(Map<String, CompiledProfile> profiles, Map<String, String> worldProfileNames) {
+        this.profiles = Collections.unmodifiableMap(profiles);
+        this.worldProfileNames = Collections.unmodifiableMap(worldProfileNames);
+
+        Set<String> cityNames = new LinkedHashSet<>();
+        Set<String> hedgedCityNames = new HashSet<>();
+        for (CompiledProfile profile : profiles.values()) {
+            if (!profile.getWeatherCity().isEmpty() && profile.getWeatherReplay() == null) {
+                cityNames.add(profile.getWeatherCity());
+                if (profile.isHedgeWeather()) {
+                    hedgedCityNames.add(profile.getWeatherCity());
+                }
+            }
+        }
+        this.weatherCities = Collections.unmodifiableList(new ArrayList<>(cityNames));
+        this.hedgedCities = Collections.unmodifiableSet(hedgedCityNames);
+    }
+
+    /**
+     * Compiles a snapshot of the plugin's current settings profiles and world assignments.
+     *
+     * @param plugin the plugin whose config is read
+     *
+     * @return the compiled settings
+     */
+    public static CompiledSettings compile(RealTimePlugin plugin) {
+        return compile(plugin, null);
+    }
+
+    /**
+     * Compiles a snapshot of the plugin's current settings profiles and world assignments,
+     * keeping the previous snapshot's compiled profiles that didn't change.
+     *
+     * @param plugin   the plugin whose config is read
+     * @param previous the previous snapshot, or null
+     *
+     * @return the compiled settings
+     */
+    public static CompiledSettings compile(RealTimePlugin plugin, CompiledSettings previous) {
+        return compile(plugin, previous, null);
+    }
+
+    /**
+     * Compiles a snapshot of the plugin's current settings profiles and world assignments.
+     * Each profile is flattened with the values it inherits from its parents, so the compiled
+     * profiles never need to look at their parents. When only one profile changed, only it and
+     * the profiles inheriting from it are compiled again, and the rest and the world assignments
+     * are kept from the previous snapshot.
+     *
+     * @param plugin             the plugin whose config is read
+     * @param previous           the previous snapshot, or null
+     * @param changedProfileName the only profile whose values changed since the previous snapshot, with no world
+     *                           assignment changed either, or null if unknown
+     *
+     * @return the compiled settings
+     */
+    public static CompiledSettings compile(RealTimePlugin plugin, CompiledSettings previous, String changedProfileName) {
+        Map<String, CompiledProfile> profiles = new LinkedHashMap<>();
+        for (SettingsProfile profile : plugin.getSettingsProfiles()) {
+            CompiledProfile previousCompiled = previous != null ? previous.getProfile(profile.getName()) : null;
+            List<String> lineage = profile.getLineage();
+            if (previousCompiled != null && changedProfileName != null && !lineage.contains(changedProfileName)) {
+                profiles.put(profile.getName(), previousCompiled);
+                continue;
+            }
+            if (profile.hasParentCycle()) {
+                plugin.getLogger().warning("The parents of profile " + profile.getName() + " make a cycle, so its inheritance stops at "
+                        + lineage.get(lineage.size() - 1));
+            }
+            CompiledProfile compiled = CompiledProfile.compile(profile);
+            profiles.put(profile.getName(), compiled.equals(previousCompiled) ? previousCompiled : compiled);
+        }
+        if (previous != null && changedProfileName != null) {
+            return new CompiledSettings(profiles, previous.worldProfileNames);
+        }
+        Map<String, String> worldProfileNames = new HashMap<>();
+        for (String worldName : plugin.getAllAffectedWorldNames()) {
+            worldProfileNames.put(worldName, plugin.getSettingsProfileNameFor(worldName));
+        }
+        return new CompiledSettings(profiles, worldProfileNames);
+    }
+
+    /**
+     * Gets the compiled settings profiles.
+     *
+     * @return unmodifiable collection of compiled profiles
+     */
+    public Collection<CompiledProfile> getProfiles() {
+        return profiles.values();
+    }
+
+    /**
+     * Gets the compiled settings profile by the given name.
+     *
+     * @param profileName a profile name
+     *
+     * @return the compiled profile, or null if it isn't defined in the config
+     */
+    public CompiledProfile getProfile(String profileName) {
+        return profiles.get(profileName);
+    }
+
+    /**
+     * Gets the compiled settings profile applied to the world by the given name.
+     *
+     * @param worldName the name of a loaded or unloaded world
+     *
+     * @return the compiled profile, or null if the world is unaffected or its profile isn't defined
+     */
+    public CompiledProfile getProfileFor(String worldName) {
+        String profileName = worldProfileNames.get(worldName);
+        return profileName != null ? profiles.get(profileName) : null;
+    }
+
+    /**
+     * Gets the distinct real life cities used by the profiles. Cities only used by profiles
+     * replaying recorded weather aren't included, since they are never fetched.
+     *
+     * @return unmodifiable list of non-empty city names
+     */
+    public List<String> getWeatherCities() {
+        return weatherCities;
+    }
+
+    /**
+     * Tests if any profile using a city hedges its weather requests.
+     *
+     * @param cityName a city name
+     *
+     * @return true if the city's weather requests are hedged
+     */
+    public boolean isHedgedCity(String cityName) {
+        return hedgedCities.contains(cityName);
+    }
+
+    /**
+     * Gets the worlds whose profile is different in this snapshot than in another one,
+     * because they were assigned another profile or their profile's settings changed.
+     *
+     * @param previous the previous snapshot
+     *
+     * @return the names of the changed worlds
+     */
+    public Set<String> getChangedWorlds(CompiledSettings previous) {
+        Set<String> changedWorlds = new LinkedHashSet<>();
+        for (String worldName : worldProfileNames.keySet()) {
+            if (getProfileFor(worldName) != previous.getProfileFor(worldName)) {
+                changedWorlds.add(worldName);
+            }
+        }
+        for (String worldName : previous.worldProfileNames.keySet()) {
+            if (!worldProfileNames.containsKey(worldName)) {
+                changedWorlds.add(worldName);
+            }
+        }
+        return changedWorlds;
+    }
+}
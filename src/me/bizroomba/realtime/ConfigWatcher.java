@@ -0,0 +1,105 @@
+package me.bizroomba.realtime;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.zip.CRC32;
+
+/**
+ * Watches a file for edits made outside of the server and reports them once they settle.
+ * Writes whose contents were already marked as current, like the plugin's own saves, are ignored.
+ * The watching happens on its own daemon thread, and the change callback is run on it.
+ */
+public final class ConfigWatcher implements Closeable {
+
+    private static final long SETTLE_MILLIS = 250L;
+
+    private final Path file;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+    private volatile long currentChecksum;
+
+    /**
+     * Starts watching a file.
+     *
+     * @param file     the watched file
+     * @param onChange called from the watching thread when the file's contents changed
+     *
+     * @throws IOException when the file's directory can't be watched
+     */
+    public ConfigWatcher(Path file, Runnable onChange) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.onChange = onChange;
+        this.watchService = this.file.getFileSystem().newWatchService();
+        this.file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.currentChecksum = checksum();
+        this.thread = new Thread(this::watch, "RealTime config watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Marks the file's current contents as known, so they are not reported as a change.
+     */
+    public void markCurrent() {
+        currentChecksum = checksum();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean touched = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    touched |= file.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (!touched) {
+                    continue;
+                }
+
+                // editors often write a file in several steps, so wait for them to finish
+                Thread.sleep(SETTLE_MILLIS);
+                while ((key = watchService.poll()) != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+
+                long checksum = checksum();
+                if (checksum != currentChecksum) {
+                    currentChecksum = checksum;
+                    onChange.run();
+                }
+            }
+        }
+        catch (InterruptedException | ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private long checksum() {
+        CRC32 crc = new CRC32();
+        try {
+            crc.update(Files.readAllBytes(file));
+        }
+        catch (IOException e) {
+            return -1;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
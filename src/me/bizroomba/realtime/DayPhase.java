@@ -0,0 +1,35 @@
+package me.bizroomba.realtime;
+
+/**
+ * The phases of a minecraft day, as seen by a world's time of day.
+ */
+public enum DayPhase {
+    DAWN,
+    DAY,
+    DUSK,
+    NIGHT;
+
+    /**
+     * Determines the day phase of a gametime.
+     * Dawn is 23000 to 24000, day is 0 to 12000, dusk is 12000 to 13000 and night is 13000 to 23000.
+     *
+     * @param gametime a full gametime or time of day
+     *
+     * @return the day phase at the gametime
+     */
+    public static DayPhase of(long gametime) {
+        long timeOfDay = Math.floorMod(gametime, 24000L);
+        if (timeOfDay < 12000) {
+            return DAY;
+        }
+        else if (timeOfDay < 13000) {
+            return DUSK;
+        }
+        else if (timeOfDay < 23000) {
+            return NIGHT;
+        }
+        else {
+            return DAWN;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package me.bizroomba.realtime;
+
+/**
+ * A pair of token buckets that keep weather requests within the api plan's
+ * per-minute and per-day limits. Tokens refill continuously and this is safe to use from any thread.
+ */
+public final class FetchQuota {
+
+    private static final long MINUTE_MILLIS = 60_000L;
+    private static final long DAY_MILLIS = 86_400_000L;
+
+    private final int perMinute;
+    private final int perDay;
+    private double minuteTokens;
+    private double dayTokens;
+    private long lastRefillMillis;
+
+    /**
+     * Creates a quota with full buckets.
+     *
+     * @param perMinute the maximum requests per minute, or 0 if unlimited
+     * @param perDay    the maximum requests per day, or 0 if unlimited
+     * @param nowMillis the current epoch millis
+     */
+    FetchQuota(int perMinute, int perDay, long nowMillis) {
+        this.perMinute = Math.max(0, perMinute);
+        this.perDay = Math.max(0, perDay);
+        this.minuteTokens = this.perMinute;
+        this.dayTokens = this.perDay;
+        this.lastRefillMillis = nowMillis;
+    }
+
+    private void refill(long nowMillis) {
+        long elapsed = Math.max(0, nowMillis - lastRefillMillis);
+        lastRefillMillis = nowMillis;
+        minuteTokens = Math.min(perMinute, minuteTokens + (double) perMinute * elapsed / MINUTE_MILLIS);
+        dayTokens = Math.min(perDay, dayTokens + (double) perDay * elapsed / DAY_MILLIS);
+    }
+
+    /**
+     * Takes a token for one request if both buckets have one.
+     *
+     * @param nowMillis the current epoch millis
+     *
+     * @return true if the request may be made, false if it would exceed the quota
+     */
+    public synchronized boolean tryAcquire(long nowMillis) {
+        refill(nowMillis);
+        if ((perMinute > 0 && minuteTokens < 1) || (perDay > 0 && dayTokens < 1)) {
+            return false;
+        }
+        minuteTokens -= 1;
+        dayTokens -= 1;
+        return true;
+    }
+
+    /**
+     * Gets the number of requests that could be made right now.
+     *
+     * @param nowMillis the current epoch millis
+     *
+     * @return the remaining requests, or Integer.MAX_VALUE if unlimited
+     */
+    public synchronized int available(long nowMillis) {
+        refill(nowMillis);
+        int available = Integer.MAX_VALUE;
+        if (perMinute > 0) {
+            available = Math.min(available, (int) minuteTokens);
+        }
+        if (perDay > 0) {
+            available = Math.min(available, (int) dayTokens);
+        }
+        return available;
+    }
+
+    /**
+     * Gets the maximum requests per minute.
+     *
+     * @return a positive integer, or 0 if unlimited
+     */
+    public int getPerMinute() {
+        return perMinute;
+    }
+
+    /**
+     * Gets the maximum requests per day.
+     *
+     * @return a positive integer, or 0 if unlimited
+     */
+    public int getPerDay() {
+        return perDay;
+    }
+}
@@ -0,0 +1,103 @@
+package me.bizroomba.realtime;
+
+/**
+ * Emits the plugin's Java Flight Recorder events, so its sync ticks and weather fetches can be told
+ * apart from other scheduler tasks and correlated with GC pauses and tick spikes in recordings.
+ * The events are enabled, disabled and thresholded like any other with JFR settings, under the
+ * names me.bizroomba.realtime.SyncTick, me.bizroomba.realtime.WeatherFetch and me.bizroomba.realtime.WeatherRequest.
+ * On runtimes without JFR the event classes are never loaded and every method does nothing.
+ * Events are passed around as plain objects for the same reason, and are null while disabled.
+ * Compiling the event classes needs the jdk.jfr api, which JDK 8 has from update 262 on,
+ * or a newer JDK compiling without {@code --release 8}, whose java 8 api has no jdk.jfr.
+ */
+public final class FlightRecorder {
+
+    private static final boolean AVAILABLE = isAvailable();
+
+    private FlightRecorder() {
+    }
+
+    private static boolean isAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event", false, FlightRecorder.class.getClassLoader());
+            return true;
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Begins timing a sync tick.
+     *
+     * @return the event, or null if it is disabled
+     */
+    public static Object beginSyncTick() {
+        return AVAILABLE ? SyncTickEvent.start() : null;
+    }
+
+    /**
+     * Ends and commits a sync tick.
+     *
+     * @param event         the event from {@link #beginSyncTick()}, or null
+     * @param worldsUpdated the number of worlds synced this tick
+     * @param writesSkipped the number of weather writes skipped because the world already showed it
+     * @param pipelined     true if the targets were computed by sync workers
+     */
+    public static void endSyncTick(Object event, int worldsUpdated, int writesSkipped, boolean pipelined) {
+        if (event != null) {
+            SyncTickEvent.finish(event, worldsUpdated, writesSkipped, pipelined);
+        }
+    }
+
+    /**
+     * Begins timing a weather fetch, from the request until its answer is parsed.
+     *
+     * @return the event, or null if it is disabled
+     */
+    public static Object beginWeatherFetch() {
+        return AVAILABLE ? WeatherFetchEvent.start() : null;
+    }
+
+    /**
+     * Ends and commits a weather fetch.
+     *
+     * @param event     the event from {@link #beginWeatherFetch()}, or null
+     * @param cityName  the fetched city
+     * @param source    the endpoint, and the provider if it wasn't the primary one
+     * @param outcome   what became of the answer, like "fetched" or "not modified"
+     * @param parseNanos the time spent parsing the answer
+     */
+    public static void endWeatherFetch(Object event, String cityName, String source, String outcome, long parseNanos) {
+        if (event != null) {
+            WeatherFetchEvent.finish(event, cityName, source, outcome, parseNanos);
+        }
+    }
+
+    /**
+     * Begins timing a single HTTP request of a weather fetch.
+     *
+     * @return the event, or null if it is disabled
+     */
+    public static Object beginWeatherRequest() {
+        return AVAILABLE ? WeatherRequestEvent.start() : null;
+    }
+
+    /**
+     * Ends and commits a single HTTP request of a weather fetch.
+     *
+     * @param event      the event from {@link #beginWeatherRequest()}, or null
+     * @param cityName   the requested city
+     * @param requestKey the provider and endpoint of the request
+     * @param status     the HTTP status, or -1 if the request wasn't sent or failed before an answer
+     * @param bytes      the number of body bytes received, as they were sent
+     * @param gzip       true if the body was gzip compressed
+     * @param outcome    what became of the request, like "ok", "not modified" or "failed"
+     */
+    public static void endWeatherRequest(Object event, String cityName, String requestKey, int status, long bytes,
+                                         boolean gzip, String outcome) {
+        if (event != null) {
+            WeatherRequestEvent.finish(event, cityName, requestKey, status, bytes, gzip, outcome);
+        }
+    }
+}
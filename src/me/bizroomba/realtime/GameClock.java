@@ -0,0 +1,131 @@
+package me.bizroomba.realtime;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Objects;
+
+/**
+ * The time settings of a profile that decide its gametime.
+ * Profiles with equal game clocks always have the same gametime,
+ * so it only needs to be computed once per sync for all of them.
+ */
+public final class GameClock {
+
+    private final LocalDateTime timeZero;
+    private final double speed;
+    private final SpeedCurve speedCurve;
+    private final long offset;
+    private final boolean solarTime;
+    private final double latitude;
+    private final double longitude;
+    private final boolean syncMoon;
+    // the current day's solar table, replaced once a day and dropped along with the clock
+    private volatile SolarTable solarTable = null;
+
+    GameClock(LocalDateTime timeZero, double speed, SpeedCurve speedCurve, long offset, boolean solarTime, double latitude, double longitude, boolean syncMoon) {
+        this.timeZero = Objects.requireNonNull(timeZero);
+        this.speed = speed;
+        this.speedCurve = solarTime ? null : speedCurve;
+        this.offset = offset;
+        this.solarTime = solarTime;
+        this.latitude = solarTime ? latitude : Double.NaN;
+        this.longitude = solarTime ? longitude : Double.NaN;
+        this.syncMoon = syncMoon;
+    }
+
+    /**
+     * Gets the game clock of a settings profile.
+     * A solar profile without coordinates uses the cached coordinates of its weather city.
+     *
+     * @param profile the settings profile
+     *
+     * @return the profile's game clock
+     */
+    public static GameClock of(SettingsProfile profile) {
+        boolean solarTime = profile.isSolarTime();
+        double latitude = profile.getLatitude();
+        double longitude = profile.getLongitude();
+        if (solarTime && (Double.isNaN(latitude) || Double.isNaN(longitude))) {
+            double[] coords = RealTimePlugin.getInstance().getRealLifeCoords(profile.getWeatherCity());
+            latitude = coords != null ? coords[0] : Double.NaN;
+            longitude = coords != null ? coords[1] : Double.NaN;
+        }
+        return new GameClock(profile.getTimeZero(), profile.getTimeSpeed(), profile.getSpeedCurve(), profile.getTimeOffset(),
+                solarTime, latitude, longitude, profile.isSyncMoon());
+    }
+
+    /**
+     * Converts the real life time since time zero into minecraft ticks.
+     * Real midnight is always 18000 ticks into a minecraft day. When using
+     * solar time, the rest of the day is warped with the day's solar table, cached in the clock.
+     * Otherwise a speed curve warps the time since time zero with its precomputed table,
+     * so midnight only stays at 18000 ticks while the curve averages normal speed.
+     *
+     * @param now the current system time
+     *
+     * @return the real life ticks before speed and offset are applied
+     */
+    public long realLifeTicksAt(LocalDateTime now) {
+        if (solarTime && !Double.isNaN(latitude) && !Double.isNaN(longitude)) {
+            ZoneId zone = RealTimePlugin.getInstance().clock.getZone();
+            SolarTable table = solarTable;
+            if (table == null || !table.isFor(now.toLocalDate(), latitude, longitude, zone)) {
+                table = SolarTable.compute(now.toLocalDate(), latitude, longitude, zone);
+                solarTable = table;
+            }
+            long days = ChronoUnit.DAYS.between(timeZero.toLocalDate(), now.toLocalDate());
+            long millisOfDay = now.toLocalTime().toNanoOfDay() / 1_000_000L;
+            return (days + 1) * 24000 + table.ticksAt(millisOfDay);
+        }
+        double seconds = speedCurve != null
+                ? speedCurve.scaledSecondsBetween(timeZero, now)
+                : ChronoUnit.MILLIS.between(timeZero, now) / 1000d;
+        return (long) (Math.floor(seconds * PluginUtils.MC_RL_RATIO) + 18000);
+    }
+
+    /**
+     * Computes the full gametime at the given system time.
+     * When syncing the moon, each game day shows the moon of the real night it stands for on the
+     * game's own calendar, which counts one day per game day from time zero's date. At normal speed
+     * and without an offset that is the current real night.
+     *
+     * @param now the current system time
+     *
+     * @return the full gametime
+     */
+    public long gameTimeAt(LocalDateTime now) {
+        long gametime = (long) ((speed * realLifeTicksAt(now)) + offset);
+        if (syncMoon) {
+            // the midnight 18000 ticks into a game day starts the date after the one whose night it is
+            LocalDate night = timeZero.toLocalDate().plusDays(Math.floorDiv(gametime, 24000L) - 1);
+            gametime = LunarPhase.applyTo(gametime, RealTimePlugin.getInstance().getMoonPhase(night));
+        }
+        return gametime;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof GameClock)) {
+            return false;
+        }
+        GameClock other = (GameClock) obj;
+        return timeZero.equals(other.timeZero)
+                && Double.compare(speed, other.speed) == 0
+                && Objects.equals(speedCurve, other.speedCurve)
+                && offset == other.offset
+                && solarTime == other.solarTime
+                && Double.compare(latitude, other.latitude) == 0
+                && Double.compare(longitude, other.longitude) == 0
+                && syncMoon == other.syncMoon;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(timeZero, speed, speedCurve, offset, solarTime, latitude, longitude, syncMoon);
+    }
+}
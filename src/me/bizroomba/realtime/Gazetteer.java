@@ -0,0 +1,301 @@
+package me.bizroomba.realtime;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An offline index of real city names used to validate and tab complete weather cities.
+ * The index is built once from a city list into a sorted file that is memory-mapped,
+ * so looking up a city is a binary search over the mapping and the list never lives on the heap.
+ * Names are matched case-insensitively and without regard to the spaces around commas.
+ * This is safe to read from any thread.
+ */
+public final class Gazetteer implements Closeable {
+
+    private static final int MAGIC = 0x52544758;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 12;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    private Gazetteer(RandomAccessFile file, MappedByteBuffer buffer, int count) {
+        this.file = file;
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    /**
+     * Opens a built index.
+     *
+     * @param indexFile the index file
+     *
+     * @return the opened gazetteer
+     * @throws IOException when the index could not be read or is not an index
+     */
+    public static Gazetteer open(File indexFile) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(indexFile, "r");
+        try {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                throw new IOException(indexFile.getName() + " is not a city index");
+            }
+            int count = buffer.getInt(8);
+            if (count < 0 || HEADER_SIZE + 4L * count > buffer.capacity()) {
+                throw new IOException(indexFile.getName() + " is damaged");
+            }
+            return new Gazetteer(file, buffer, count);
+        }
+        catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Builds an index from city lists. Each list is either openweathermap.org's city.list.json,
+     * whose cities are indexed as "&lt;city&gt;, &lt;country&gt;" and, when they have a state,
+     * also as "&lt;city&gt;, &lt;state&gt;, &lt;country&gt;", or a text file with one
+     * "&lt;city&gt;[, &lt;state&gt;][, &lt;country&gt;]" per line. Duplicate names are kept once.
+     * The index is written next to its final place and then moved, so readers never see half of it.
+     *
+     * @param sourceFiles the city lists
+     * @param indexFile   the index file to write
+     *
+     * @throws IOException when a list could not be read or the index written
+     */
+    public static void build(List<File> sourceFiles, File indexFile) throws IOException {
+        Map<String, String> cities = new TreeMap<>(Gazetteer::compareUtf8);
+        for (File sourceFile : sourceFiles) {
+            if (sourceFile.getName().endsWith(".json")) {
+                readJsonList(sourceFile, cities);
+            }
+            else {
+                for (String line : Files.readAllLines(sourceFile.toPath(), StandardCharsets.UTF_8)) {
+                    String cityName = line.trim();
+                    if (!cityName.isEmpty() && !cityName.startsWith("#")) {
+                        cities.putIfAbsent(normalize(cityName), cityName);
+                    }
+                }
+            }
+        }
+
+        File tempFile = new File(indexFile.getPath() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(tempFile.toPath());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(cities.size());
+            int offset = HEADER_SIZE + 4 * cities.size();
+            List<byte[][]> entries = new ArrayList<>(cities.size());
+            for (Map.Entry<String, String> city : cities.entrySet()) {
+                byte[] key = city.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[] name = city.getValue().getBytes(StandardCharsets.UTF_8);
+                entries.add(new byte[][]{key, name});
+                out.writeInt(offset);
+                offset += 4 + key.length + name.length;
+            }
+            for (byte[][] entry : entries) {
+                out.writeShort(entry[0].length);
+                out.write(entry[0]);
+                out.writeShort(entry[1].length);
+                out.write(entry[1]);
+            }
+        }
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void readJsonList(File sourceFile, Map<String, String> cities) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(sourceFile.toPath(), StandardCharsets.UTF_8)) {
+            Object root = new JSONParser().parse(reader);
+            if (!(root instanceof JSONArray)) {
+                return;
+            }
+            for (Object objCity : (JSONArray) root) {
+                if (!(objCity instanceof JSONObject)) {
+                    continue;
+                }
+                Object name = ((JSONObject) objCity).get("name");
+                Object state = ((JSONObject) objCity).get("state");
+                Object country = ((JSONObject) objCity).get("country");
+                if (!(name instanceof String) || ((String) name).trim().isEmpty()) {
+                    continue;
+                }
+                String cityName = ((String) name).trim();
+                if (country instanceof String && !((String) country).isEmpty()) {
+                    if (state instanceof String && !((String) state).isEmpty()) {
+                        String stateName = cityName + ", " + state + ", " + country;
+                        cities.putIfAbsent(normalize(stateName), stateName);
+                    }
+                    cityName += ", " + country;
+                }
+                cities.putIfAbsent(normalize(cityName), cityName);
+            }
+        }
+        catch (ParseException e) {
+            throw new IOException(sourceFile.getName() + " is not valid json", e);
+        }
+    }
+
+    /**
+     * Normalizes a city name for matching: lowercase, trimmed, with single spaces
+     * and no spaces around commas.
+     *
+     * @param cityName a city name
+     *
+     * @return the matching key
+     */
+    public static String normalize(String cityName) {
+        return cityName.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ").replaceAll(" ?, ?", ",");
+    }
+
+    private static int compareUtf8(String a, String b) {
+        return compareBytes(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int diff = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Compares an entry's key with the given key bytes.
+     *
+     * @param idx    the entry's index
+     * @param key    the key bytes to compare with
+     * @param prefix true to treat entries starting with the key as equal
+     *
+     * @return negative, zero or positive as the entry's key is before, equal to or after the key
+     */
+    private int compareKeyAt(int idx, byte[] key, boolean prefix) {
+        int offset = buffer.getInt(HEADER_SIZE + 4 * idx);
+        int length = buffer.getShort(offset) & 0xFFFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(offset + 2 + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        if (prefix && length >= key.length) {
+            return 0;
+        }
+        return length - key.length;
+    }
+
+    private String nameAt(int idx) {
+        int offset = buffer.getInt(HEADER_SIZE + 4 * idx);
+        offset += 2 + (buffer.getShort(offset) & 0xFFFF);
+        byte[] name = new byte[buffer.getShort(offset) & 0xFFFF];
+        for (int i = 0; i < name.length; i++) {
+            name[i] = buffer.get(offset + 2 + i);
+        }
+        return new String(name, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Finds the first entry whose key is not before the given key.
+     */
+    private int lowerBound(byte[] key, boolean prefix) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compareKeyAt(mid, key, prefix) < 0) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Tests if a city is in the index.
+     *
+     * @param cityName a city name in any case
+     *
+     * @return true if the city is known
+     */
+    public boolean contains(String cityName) {
+        byte[] key = normalize(cityName).getBytes(StandardCharsets.UTF_8);
+        try {
+            int idx = lowerBound(key, false);
+            return idx < count && compareKeyAt(idx, key, false) == 0;
+        }
+        catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Gets the names of the cities starting with a prefix, in order.
+     *
+     * @param prefix the start of a city name in any case
+     * @param limit  the maximum number of names
+     *
+     * @return the matching city names as they were written in the city list
+     */
+    public List<String> complete(String prefix, int limit) {
+        List<String> cityNames = new ArrayList<>();
+        byte[] key = normalize(prefix).getBytes(StandardCharsets.UTF_8);
+        try {
+            for (int idx = lowerBound(key, true); idx < count && cityNames.size() < limit; idx++) {
+                if (compareKeyAt(idx, key, true) != 0) {
+                    break;
+                }
+                cityNames.add(nameAt(idx));
+            }
+        }
+        catch (IndexOutOfBoundsException | BufferUnderflowException ignored) {
+        }
+        return cityNames;
+    }
+
+    /**
+     * Gets the number of cities in the index.
+     *
+     * @return the number of cities
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Closes the index file. The mapping itself is released once it is no longer referenced.
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
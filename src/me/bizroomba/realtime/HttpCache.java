@@ -0,0 +1,262 @@
+package me.bizroomba.realtime;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the validators of the last weather answer of each city and request, so requests can be
+ * conditional, skipped while the last answer is fresh, or recognized as unchanged by their payload hash.
+ * It also counts the requests and the bytes received, as they came over the wire.
+ * This is safe to use from any thread.
+ */
+public final class HttpCache {
+
+    private final Map<String, Map<String, Validators>> cities = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+
+    /**
+     * Gets the validators of the last answer to a request.
+     *
+     * @param cityName   the requested city
+     * @param requestKey the provider and endpoint of the request
+     *
+     * @return the validators, or null if the request wasn't answered yet or was forgotten
+     */
+    public Validators get(String cityName, String requestKey) {
+        Map<String, Validators> requests = cities.get(cityName);
+        return requests != null ? requests.get(requestKey) : null;
+    }
+
+    /**
+     * Remembers the validators of an answer to a request.
+     *
+     * @param cityName   the requested city
+     * @param requestKey the provider and endpoint of the request
+     * @param validators the answer's validators
+     */
+    public void put(String cityName, String requestKey, Validators validators) {
+        cities.computeIfAbsent(cityName, k -> new ConcurrentHashMap<>()).put(requestKey, validators);
+    }
+
+    /**
+     * Forgets every answer for a city, so its next requests are answered in full.
+     * This must be done when the answers weren't used, for example when they couldn't be parsed.
+     *
+     * @param cityName the city
+     */
+    public void forget(String cityName) {
+        cities.remove(cityName);
+    }
+
+    /**
+     * Forgets the answers for every city but the given ones.
+     *
+     * @param cityNames the cities whose answers are kept
+     */
+    public void retainCities(Collection<String> cityNames) {
+        cities.keySet().retainAll(cityNames);
+    }
+
+    /**
+     * Counts a request that was sent, or skipped because the last answer is fresh.
+     *
+     * @param sameAnswer true if the answer was the same as the last one or the request was skipped
+     */
+    public void countRequest(boolean sameAnswer) {
+        requests.incrementAndGet();
+        if (sameAnswer) {
+            unchanged.incrementAndGet();
+        }
+    }
+
+    /**
+     * Wraps a response stream to count the bytes read from it, both for this request and in total.
+     *
+     * @param in the raw response stream
+     *
+     * @return the counting stream
+     */
+    public CountingInputStream counting(InputStream in) {
+        return new CountingInputStream(in);
+    }
+
+    /**
+     * Gets the number of requests.
+     *
+     * @return the number of requests sent or skipped
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of requests whose answer didn't change or that were skipped.
+     *
+     * @return the number of unchanged answers
+     */
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * Gets the number of bytes received.
+     *
+     * @return the number of response body bytes, compressed as they were sent
+     */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * A response stream that counts the bytes read from it.
+     */
+    public final class CountingInputStream extends FilterInputStream {
+
+        private long count = 0;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+                bytes.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+                bytes.addAndGet(read);
+            }
+            return read;
+        }
+
+        /**
+         * Gets the number of bytes read from this stream.
+         *
+         * @return the number of bytes read so far
+         */
+        public long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * The validators of an answer. Immutable.
+     */
+    public static final class Validators {
+
+        private final String etag;
+        private final String lastModified;
+        private final long freshUntilMillis;
+        private final long payloadHash;
+
+        Validators(String etag, String lastModified, long freshUntilMillis, long payloadHash) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.freshUntilMillis = freshUntilMillis;
+            this.payloadHash = payloadHash;
+        }
+
+        /**
+         * Creates the validators of an answer from its headers.
+         *
+         * @param etag         the ETag header, or null
+         * @param lastModified the Last-Modified header, or null
+         * @param cacheControl the Cache-Control header, or null
+         * @param nowMillis    the current epoch millis
+         * @param payloadHash  the hash of the answer's body
+         *
+         * @return the answer's validators
+         */
+        public static Validators of(String etag, String lastModified, String cacheControl, long nowMillis, long payloadHash) {
+            return new Validators(etag, lastModified, nowMillis + 1000L * getMaxAge(cacheControl), payloadHash);
+        }
+
+        private static long getMaxAge(String cacheControl) {
+            if (cacheControl == null) {
+                return 0;
+            }
+            long maxAge = 0;
+            for (String directive : cacheControl.toLowerCase(Locale.ROOT).split(",")) {
+                directive = directive.trim();
+                if (directive.equals("no-cache") || directive.equals("no-store")) {
+                    return 0;
+                }
+                if (directive.startsWith("max-age=")) {
+                    try {
+                        maxAge = Math.max(0, Long.parseLong(directive.substring(8).trim()));
+                    }
+                    catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+            return maxAge;
+        }
+
+        /**
+         * Creates the same validators, fresh for as long as a new Cache-Control header says.
+         *
+         * @param cacheControl the Cache-Control header of a not modified answer, or null
+         * @param nowMillis    the current epoch millis
+         *
+         * @return the refreshed validators
+         */
+        public Validators refreshed(String cacheControl, long nowMillis) {
+            return new Validators(etag, lastModified, nowMillis + 1000L * getMaxAge(cacheControl), payloadHash);
+        }
+
+        /**
+         * Tests if the answer may be reused without asking again.
+         *
+         * @param nowMillis the current epoch millis
+         *
+         * @return true if the answer is still fresh
+         */
+        public boolean isFresh(long nowMillis) {
+            return nowMillis < freshUntilMillis;
+        }
+
+        /**
+         * Gets the answer's ETag.
+         *
+         * @return the ETag, or null
+         */
+        public String getEtag() {
+            return etag;
+        }
+
+        /**
+         * Gets the answer's Last-Modified date.
+         *
+         * @return the http date, or null
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Gets the hash of the answer's body.
+         *
+         * @return the payload hash
+         */
+        public long getPayloadHash() {
+            return payloadHash;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package me.bizroomba.realtime;
+
+import java.util.Arrays;
+
+/**
+ * The most recent response times of a weather provider, used to pick the hedge delay.
+ * This is safe to use from any thread.
+ */
+public final class LatencyStats {
+
+    /**
+     * Percentiles are not trusted with fewer samples than this.
+     */
+    public static final int MIN_SAMPLES = 8;
+
+    private final long[] samples;
+    private int next = 0;
+    private int count = 0;
+
+    /**
+     * Creates empty stats.
+     *
+     * @param capacity the number of most recent samples kept
+     */
+    public LatencyStats(int capacity) {
+        samples = new long[capacity];
+    }
+
+    /**
+     * Records the response time of a request.
+     *
+     * @param millis the response time in milliseconds
+     */
+    public synchronized void record(long millis) {
+        samples[next] = millis;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * Gets a percentile of the recorded response times.
+     *
+     * @param percentile a fraction from 0 to 1, like 0.95
+     *
+     * @return the response time in milliseconds, or -1 if there are too few samples
+     */
+    public synchronized long percentile(double percentile) {
+        if (count < MIN_SAMPLES) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return sorted[Math.max(0, Math.min(count - 1, (int) Math.ceil(percentile * count) - 1))];
+    }
+
+    /**
+     * Gets the number of recorded samples.
+     *
+     * @return the number of samples kept
+     */
+    public synchronized int size() {
+        return count;
+    }
+}
@@ -0,0 +1,58 @@
+package me.bizroomba.realtime;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Functions to match the minecraft moon phase with the real lunar phase.
+ * Minecraft shows moon phase {@code (fullTime / 24000) % 8}, where 0 is a full moon
+ * and 4 is a new moon.
+ */
+public final class LunarPhase {
+
+    /**
+     * The mean length of a lunar cycle in days.
+     */
+    public static final double SYNODIC_MONTH = 29.530588853;
+
+    /**
+     * A known new moon used as the reference for the lunar cycle.
+     */
+    private static final Instant REFERENCE_NEW_MOON = Instant.parse("2000-01-06T18:14:00Z");
+
+    private LunarPhase() {
+    }
+
+    /**
+     * Computes the minecraft moon phase matching the real moon on the night following the given date.
+     *
+     * @param date the local date
+     * @param zone the time zone of the date
+     *
+     * @return a minecraft moon phase from 0 (full) to 7
+     */
+    public static int compute(LocalDate date, ZoneId zone) {
+        Instant midnight = date.plusDays(1).atStartOfDay(zone).toInstant();
+        double days = ChronoUnit.SECONDS.between(REFERENCE_NEW_MOON, midnight) / 86400d;
+        double age = ((days % SYNODIC_MONTH) + SYNODIC_MONTH) % SYNODIC_MONTH;
+        int realPhase = (int) Math.floor(age / SYNODIC_MONTH * 8 + 0.5) % 8;
+        return (realPhase + 4) % 8;
+    }
+
+    /**
+     * Moves the gametime forward to the next day showing the given moon phase, keeping the time of day.
+     * While the phase stays the same, later gametimes never move to an earlier day, and the next phase
+     * is always shown on a later day than the previous one, so the day never moves backwards.
+     *
+     * @param gametime the full gametime
+     * @param phase    a minecraft moon phase from 0 (full) to 7
+     *
+     * @return the full gametime showing the moon phase
+     */
+    public static long applyTo(long gametime, int phase) {
+        long day = Math.floorDiv(gametime, 24000L);
+        return gametime + Math.floorMod(phase - day, 8L) * 24000L;
+    }
+}
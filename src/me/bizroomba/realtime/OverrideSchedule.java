@@ -0,0 +1,176 @@
+package me.bizroomba.realtime;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Drives the scheduled overrides with a timing wheel of one second slots. The start and end of each
+ * override's next window are scheduled on the wheel, so advancing it every tick costs the same however
+ * many overrides there are, and the active overrides only change when a window starts or ends.
+ * When several overrides of a profile or world are active, the first one in the config wins,
+ * and an override of a world wins over one of its profile.
+ * The schedule is advanced from the main thread, and the active overrides can be read from any thread.
+ */
+public final class OverrideSchedule {
+
+    private static final int WHEEL_SLOTS = 4096;
+
+    private List<ScheduledOverride> overrides = Collections.emptyList();
+    private final TimingWheel<Transition> wheel = new TimingWheel<>(WHEEL_SLOTS, 0);
+    private final Set<ScheduledOverride> active = new HashSet<>();
+    private volatile Map<String, ScheduledOverride> activeProfiles = Collections.emptyMap();
+    private volatile Map<String, ScheduledOverride> activeWorlds = Collections.emptyMap();
+
+    /**
+     * Replaces the scheduled overrides, unless they are the same as before.
+     *
+     * @param overrides the overrides in config order
+     * @param now       the current real life local datetime
+     */
+    public void load(List<ScheduledOverride> overrides, LocalDateTime now) {
+        if (overrides.equals(this.overrides)) {
+            return;
+        }
+        this.overrides = Collections.unmodifiableList(new ArrayList<>(overrides));
+        reschedule(now);
+    }
+
+    /**
+     * Starts and ends the windows that are due. Should be called every tick.
+     * When the clock jumps backwards or further than the wheel reaches, everything is rescheduled.
+     *
+     * @param now the current real life local datetime
+     */
+    public void advance(LocalDateTime now) {
+        long second = toSecond(now);
+        long elapsed = second - wheel.getCurrentTick();
+        if (elapsed <= 0) {
+            if (elapsed < 0) {
+                reschedule(now);
+            }
+            return;
+        }
+        if (elapsed >= wheel.getSlotCount()) {
+            reschedule(now);
+            return;
+        }
+
+        boolean[] changed = {false};
+        wheel.advance(second, transition -> {
+            ScheduledOverride override = transition.override;
+            if (transition.start) {
+                active.add(override);
+                wheel.schedule(toSecond(transition.at.plus(override.getDuration())), new Transition(override, transition.at, false));
+            }
+            else {
+                LocalDateTime end = transition.at.plus(override.getDuration());
+                LocalDateTime start = override.nextStart(end.minusNanos(1));
+                if (start.isAfter(end)) {
+                    active.remove(override);
+                    wheel.schedule(toSecond(start), new Transition(override, start, true));
+                }
+                else {
+                    // the next window starts as this one ends, so the override stays active
+                    wheel.schedule(toSecond(start.plus(override.getDuration())), new Transition(override, start, false));
+                    return;
+                }
+            }
+            changed[0] = true;
+        });
+        if (changed[0]) {
+            publish();
+        }
+    }
+
+    private void reschedule(LocalDateTime now) {
+        wheel.clear(toSecond(now));
+        active.clear();
+        for (ScheduledOverride override : overrides) {
+            LocalDateTime start = override.currentStart(now);
+            if (start != null) {
+                active.add(override);
+                wheel.schedule(toSecond(start.plus(override.getDuration())), new Transition(override, start, false));
+            }
+            else {
+                start = override.nextStart(now);
+                wheel.schedule(toSecond(start), new Transition(override, start, true));
+            }
+        }
+        publish();
+    }
+
+    private void publish() {
+        Map<String, ScheduledOverride> profiles = new HashMap<>();
+        Map<String, ScheduledOverride> worlds = new HashMap<>();
+        // in config order, so the first active override of a target wins
+        for (ScheduledOverride override : overrides) {
+            if (active.contains(override)) {
+                (override.isWorldTarget() ? worlds : profiles).putIfAbsent(override.getTarget(), override);
+            }
+        }
+        activeProfiles = Collections.unmodifiableMap(profiles);
+        activeWorlds = Collections.unmodifiableMap(worlds);
+    }
+
+    private static long toSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * Gets the override in force for a world.
+     *
+     * @param worldName   the world's name
+     * @param profileName the name of the world's profile
+     *
+     * @return the active override, or null if the world isn't overridden
+     */
+    public ScheduledOverride getOverrideFor(String worldName, String profileName) {
+        ScheduledOverride override = activeWorlds.get(worldName);
+        return override != null ? override : activeProfiles.get(profileName);
+    }
+
+    /**
+     * Gets the overrides whose window is open, including those hidden by another override of their target.
+     * This is only used from the main thread.
+     *
+     * @return the active overrides in config order
+     */
+    public List<ScheduledOverride> getActive() {
+        List<ScheduledOverride> activeOverrides = new ArrayList<>();
+        for (ScheduledOverride override : overrides) {
+            if (active.contains(override)) {
+                activeOverrides.add(override);
+            }
+        }
+        return activeOverrides;
+    }
+
+    /**
+     * Gets every scheduled override.
+     *
+     * @return the overrides in config order
+     */
+    public List<ScheduledOverride> getOverrides() {
+        return overrides;
+    }
+
+    private static final class Transition {
+
+        private final ScheduledOverride override;
+        private final LocalDateTime at;
+        private final boolean start;
+
+        Transition(ScheduledOverride override, LocalDateTime at, boolean start) {
+            this.override = override;
+            this.at = at;
+            this.start = start;
+        }
+    }
+}
@@ -6,10 +6,14 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.PluginDescriptionFile;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.IllegalFormatException;
 import java.util.List;
 import java.util.Objects;
@@ -22,6 +26,9 @@ public class PluginCmds {
 
     public static final String CHAT_TAG = "&f[&bReal&6Time&f]&r ";
 
+    private static final int TRACE_PAGE_SIZE = 10;
+    private static final int CITY_COMPLETIONS = 20;
+
     private PluginCmds() {
     }
 
@@ -172,18 +179,37 @@ public class PluginCmds {
                     pluginHelp += "&b/realtime forgetworld <world> &7stop syncing the chosen world\n";
                     pluginHelp += "&b/realtime forcesync &7manually updates the game time and weather\n";
                     pluginHelp += "&b/realtime fetchweather &7manually fetches the current rl weather\n";
+                    pluginHelp += "&b/realtime trace [<profile|world>] [<page>] &7shows the most recent syncs and fetches\n";
+                    pluginHelp += "&b/realtime trace dump &7writes the whole sync trace to a file\n";
+                    pluginHelp += "&b/realtime overrides &7shows the scheduled overrides and which are active\n";
+                    pluginHelp += "&b/realtime weatherat <\"city...\"> <datetime> &7shows the recorded weather of a city at a past time\n";
+                    pluginHelp += "&b/realtime latency &7shows the weather providers' response times, hedge delay and transfers\n";
                     pluginHelp += "&b/realtime getsynctime [<profile>] &7get whether time is being synced\n";
                     pluginHelp += "&b/realtime gettimezero [<profile>] &7get the rl time of gametime 0\n";
                     pluginHelp += "&b/realtime gettimeoffset [<profile>] &7get the ticks ahead gametime is from rl\n";
                     pluginHelp += "&b/realtime gettimespeed [<profile>] &7get the speed multiplier of gametime from rl\n";
+                    pluginHelp += "&b/realtime getspeedcurve [<profile>] &7get how the speed of gametime varies over the rl week\n";
                     pluginHelp += "&b/realtime getsyncweather [<profile>] &7get whether weather is being synced\n";
                     pluginHelp += "&b/realtime getweathercity [<profile>] &7get the rl city that weather is synced to\n";
+                    pluginHelp += "&b/realtime getweatherreplay [<profile>] &7get the past date whose recorded weather is replayed\n";
+                    pluginHelp += "&b/realtime gethedgeweather [<profile>] &7get whether slow weather requests are also sent to wttr.in\n";
+                    pluginHelp += "&b/realtime getparent [<profile>] &7get the profile whose values are inherited\n";
+                    pluginHelp += "&b/realtime getsolartime [<profile>] &7get whether sunrise and sunset follow the rl sun\n";
+                    pluginHelp += "&b/realtime getsyncmoon [<profile>] &7get whether the moon phase is being synced\n";
+                    pluginHelp += "&b/realtime getlocation [<profile>] &7get the rl coordinates used for solar time\n";
                     pluginHelp += "&b/realtime setsynctime (true|false) [<profile>] &7set whether time is being synced\n";
                     pluginHelp += "&b/realtime settimezero <datetime> [<profile>] &7set the rl time of gametime 0\n";
                     pluginHelp += "&b/realtime settimeoffset <ticks> [<profile>] &7set the ticks ahead gametime is from rl\n";
                     pluginHelp += "&b/realtime settimespeed <multiplier> [<profile>] &7set the speed multiplier of gametime from rl\n";
+                    pluginHelp += "&b/realtime setspeedcurve (<\"curve...\">|off) [<profile>] &7vary the speed of gametime over the rl week\n";
                     pluginHelp += "&b/realtime setsyncweather (true|false) [<profile>] &7set whether weather is being synced\n";
                     pluginHelp += "&b/realtime setweathercity <\"city...\"> [<profile>] &7set the rl city that weather is synced to\n";
+                    pluginHelp += "&b/realtime setweatherreplay (<date>|off) [<profile>] &7replay the city's recorded weather of a past date\n";
+                    pluginHelp += "&b/realtime sethedgeweather (true|false) [<profile>] &7set whether slow weather requests are also sent to wttr.in\n";
+                    pluginHelp += "&b/realtime setparent (<parent>|none) [<profile>] &7inherit the values a profile doesn't set from another\n";
+                    pluginHelp += "&b/realtime setsolartime (true|false) [<profile>] &7set whether sunrise and sunset follow the rl sun\n";
+                    pluginHelp += "&b/realtime setsyncmoon (true|false) [<profile>] &7set whether the moon phase is being synced\n";
+                    pluginHelp += "&b/realtime setlocation (<lat> <lon>|city) [<profile>] &7set the rl coordinates used for solar time\n";
                     pluginHelp += "&b/realtime listprofiles &7shows a list of settings profiles that have custom values\n";
                     pluginHelp += "&b/realtime copyprofile <from> <to> &7copies the settings of one profile to another\n";
                     pluginHelp += "&b/realtime resetprofile <profile> &7deletes all the custom values for a profile\n";
@@ -227,6 +253,7 @@ public class PluginCmds {
                 }
                 else if (args.length == 1) {
                     PluginUtils.syncWorldsToRealLifeInspected(true);
+                    chatMsg(sender, "&aSynced all worlds, see &e/realtime trace &afor details");
                 }
                 else {
                     chatMsg(sender, "&6/realtime forcesync");
@@ -238,11 +265,97 @@ public class PluginCmds {
                 }
                 else if (args.length == 1) {
                     PluginUtils.fetchRealLifeWeatherInspected(true);
+                    chatMsg(sender, "&aFetching the weather, see &e/realtime trace &afor details");
                 }
                 else {
                     chatMsg(sender, "&6/realtime fetchweather");
                 }
             }
+            else if (args[0].equalsIgnoreCase("trace")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 2 && args[1].equalsIgnoreCase("dump")) {
+                    plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+                        String msg;
+                        try {
+                            msg = "&aWrote the sync trace to " + PluginUtils.dumpSyncTrace().getPath();
+                        }
+                        catch (IOException e) {
+                            msg = "&cThe sync trace could not be written: " + e.getMessage();
+                        }
+                        String finalMsg = msg;
+                        plugin.getServer().getScheduler().runTask(plugin, () -> chatMsg(sender, finalMsg));
+                    });
+                }
+                else if (args.length <= 3) {
+                    doTrace:
+                    {
+                        String filter = null;
+                        int page = 1;
+                        if (args.length >= 2) {
+                            String last = args[args.length - 1];
+                            boolean lastIsPage = !last.isEmpty() && last.chars().allMatch(Character::isDigit);
+                            if (lastIsPage) {
+                                try {
+                                    page = Integer.parseInt(last);
+                                }
+                                catch (NumberFormatException e) {
+                                    chatMsg(sender, "&cPage must be a number");
+                                    break doTrace;
+                                }
+                            }
+                            if (args.length == 3 && !lastIsPage) {
+                                chatMsg(sender, "&cPage must be a number");
+                                break doTrace;
+                            }
+                            if (args.length == 3 || !lastIsPage) {
+                                filter = args[1];
+                            }
+                        }
+                        if (page < 1) {
+                            chatMsg(sender, "&cPage must be at least 1");
+                            break doTrace;
+                        }
+
+                        List<TraceEntry> entries = plugin.syncTrace.read(filter, (page - 1) * TRACE_PAGE_SIZE, TRACE_PAGE_SIZE);
+                        if (entries.isEmpty()) {
+                            chatMsg(sender, "&eNothing traced" + (filter != null ? " for " + filter : "") + " on page " + page);
+                            break doTrace;
+                        }
+                        chatMsg(sender, "&6--==[ &eSync trace" + (filter != null ? " of " + filter : "") + ", page " + page + " &6]==--");
+                        for (TraceEntry entry : entries) {
+                            chatMsg(sender, "&7" + entry);
+                        }
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime trace [<profile|world>] [<page>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("overrides")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1) {
+                    List<ScheduledOverride> overrides = plugin.overrideSchedule.getOverrides();
+                    List<ScheduledOverride> active = plugin.overrideSchedule.getActive();
+                    if (overrides.isEmpty()) {
+                        chatMsg(sender, "&eNo overrides are scheduled");
+                    }
+                    else {
+                        List<String> names = new ArrayList<>();
+                        for (ScheduledOverride override : active) {
+                            names.add(override.getName() + " (" + (override.isWorldTarget() ? "world " : "profile ") + override.getTarget() + ")");
+                        }
+                        chatMsg(sender, "&a" + overrides.size() + " overrides scheduled, active: &e"
+                                + (names.isEmpty() ? "none" : String.join(", ", names)));
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime overrides");
+                }
+            }
             else if (args[0].equalsIgnoreCase("getsynctime")) {
                 if (!sender.hasPermission("realtime.mod")) {
                     chatMsg(sender, "&cYou don't have permission to do that");
@@ -295,6 +408,19 @@ public class PluginCmds {
                     chatMsg(sender, "&6/realtime gettimespeed [<profile>]");
                 }
             }
+            else if (args[0].equalsIgnoreCase("getspeedcurve")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    SpeedCurve curve = plugin.getSettingsProfile(profileName).getSpeedCurve();
+                    chatMsg(sender, "Got settings." + profileName + ".speed-curve: " + (curve != null ? curve : "off"));
+                }
+                else {
+                    chatMsg(sender, "&6/realtime getspeedcurve [<profile>]");
+                }
+            }
             else if (args[0].equalsIgnoreCase("getsyncweather")) {
                 if (!sender.hasPermission("realtime.mod")) {
                     chatMsg(sender, "&cYou don't have permission to do that");
@@ -321,6 +447,99 @@ public class PluginCmds {
                     chatMsg(sender, "&6/realtime getweathercity [<profile>]");
                 }
             }
+            else if (args[0].equalsIgnoreCase("getweatherreplay")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    LocalDate replayDate = plugin.getSettingsProfile(profileName).getWeatherReplay();
+                    chatMsg(sender, "Got settings." + profileName + ".weather-replay: " + (replayDate != null ? replayDate : "off"));
+                }
+                else {
+                    chatMsg(sender, "&6/realtime getweatherreplay [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("gethedgeweather")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    boolean isHedgeWeather = plugin.getSettingsProfile(profileName).isHedgeWeather();
+                    chatMsg(sender, "Got settings." + profileName + ".hedge-weather: " + isHedgeWeather);
+                }
+                else {
+                    chatMsg(sender, "&6/realtime gethedgeweather [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("getparent")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    SettingsProfile profile = plugin.getSettingsProfile(profileName);
+                    String parentName = profile.getParent();
+                    chatMsg(sender, "Got settings." + profileName + ".parent: " + (parentName.isEmpty() ? "none" : parentName));
+                    List<String> lineage = profile.getLineage();
+                    if (lineage.size() > 2) {
+                        chatMsg(sender, "&aInherits from: &e" + String.join(" > ", lineage.subList(1, lineage.size())));
+                    }
+                    if (profile.hasParentCycle()) {
+                        chatMsg(sender, "&eThe parents make a cycle, so inheriting stops at " + lineage.get(lineage.size() - 1));
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime getparent [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("getsolartime")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    boolean isSolarTime = plugin.getSettingsProfile(profileName).isSolarTime();
+                    chatMsg(sender, "Got settings." + profileName + ".solar-time: " + isSolarTime);
+                }
+                else {
+                    chatMsg(sender, "&6/realtime getsolartime [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("getsyncmoon")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    boolean isSyncMoon = plugin.getSettingsProfile(profileName).isSyncMoon();
+                    chatMsg(sender, "Got settings." + profileName + ".sync-moon: " + isSyncMoon);
+                }
+                else {
+                    chatMsg(sender, "&6/realtime getsyncmoon [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("getlocation")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1 || args.length == 2) {
+                    String profileName = args.length == 2 ? args[1] : "default";
+                    SettingsProfile profile = plugin.getSettingsProfile(profileName);
+                    double latitude = profile.getLatitude();
+                    double longitude = profile.getLongitude();
+                    if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                        chatMsg(sender, "Got settings." + profileName + ".latitude/longitude: weather city");
+                    }
+                    else {
+                        chatMsg(sender, "Got settings." + profileName + ".latitude/longitude: " + latitude + ", " + longitude);
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime getlocation [<profile>]");
+                }
+            }
             else if (args[0].equalsIgnoreCase("setsynctime")) {
                 if (!sender.hasPermission("realtime.mod")) {
                     chatMsg(sender, "&cYou don't have permission to do that");
@@ -431,6 +650,41 @@ public class PluginCmds {
                     chatMsg(sender, "&6Multiplier should be a non-zero real number");
                 }
             }
+            else if (args[0].equalsIgnoreCase("setspeedcurve")) {
+                String[] curveArgs = asQuoteAwareArgs(args);
+
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (curveArgs.length == 2 || curveArgs.length == 3) {
+                    String curveName = curveArgs[1];
+                    String profileName = curveArgs.length == 3 ? curveArgs[2] : "default";
+
+                    doSetSpeedCurve:
+                    {
+                        SpeedCurve curve = null;
+                        if (!curveName.equalsIgnoreCase("off") && !curveName.trim().isEmpty()) {
+                            try {
+                                curve = SpeedCurve.parse(curveName);
+                            }
+                            catch (IllegalArgumentException ex) {
+                                chatMsg(sender, "&cInvalid speed curve: " + ex.getMessage());
+                                break doSetSpeedCurve;
+                            }
+                        }
+                        SettingsProfile profile = plugin.getSettingsProfile(profileName);
+                        profile.setSpeedCurve(curve);
+                        chatMsg(sender, "&aSet settings." + profileName + ".speed-curve: " + (curve != null ? curve : "off"));
+                        if (curve != null && profile.isSolarTime()) {
+                            chatMsg(sender, "&eThe speed curve is not used while solar time is on");
+                        }
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime setspeedcurve (<curve>|off) [<profile>]");
+                    chatMsg(sender, "&6Curve should be quoted rules like \"22:00-06:00 4; sat,sun 10:00-18:00 0.5\"");
+                }
+            }
             else if (args[0].equalsIgnoreCase("setsyncweather")) {
                 if (!sender.hasPermission("realtime.mod")) {
                     chatMsg(sender, "&cYou don't have permission to do that");
@@ -462,9 +716,17 @@ public class PluginCmds {
                     String cityName = cityArgs[1];
                     String profileName = cityArgs.length == 3 ? cityArgs[2] : "default";
 
+                    Gazetteer gazetteer = plugin.gazetteer;
                     if (cityName.contains("&") || cityName.contains("?") || cityName.contains("/")) {
                         chatMsg(sender, "&cCity contains invalid characters");
                     }
+                    else if (!cityName.isEmpty() && gazetteer != null && !gazetteer.contains(cityName)) {
+                        chatMsg(sender, "&cUnknown city " + cityName + ", add it to cities.txt if it is missing");
+                        List<String> similar = gazetteer.complete(cityName.substring(0, Math.min(3, cityName.length())), 5);
+                        if (!similar.isEmpty()) {
+                            chatMsg(sender, "&eDid you mean: " + String.join("; ", similar));
+                        }
+                    }
                     else {
                         plugin.getSettingsProfile(profileName).setWeatherCity(cityName);
                         chatMsg(sender, "&aSet settings." + profileName + ".weather-city: " + cityName);
@@ -475,6 +737,230 @@ public class PluginCmds {
                     chatMsg(sender, "&6City should quoted if it contains spaces");
                 }
             }
+            else if (args[0].equalsIgnoreCase("setweatherreplay")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 2 || args.length == 3) {
+                    String dateName = args[1];
+                    String profileName = args.length == 3 ? args[2] : "default";
+
+                    doSetWeatherReplay:
+                    {
+                        LocalDate replayDate = null;
+                        if (!dateName.equalsIgnoreCase("off")) {
+                            try {
+                                replayDate = LocalDate.parse(dateName, DateTimeFormatter.ISO_LOCAL_DATE);
+                            }
+                            catch (DateTimeParseException ex) {
+                                chatMsg(sender, "&cDate was not formatted correctly");
+                                break doSetWeatherReplay;
+                            }
+                            if (!replayDate.isBefore(LocalDate.now(plugin.clock))) {
+                                chatMsg(sender, "&cDate must be in the past");
+                                break doSetWeatherReplay;
+                            }
+                            if (plugin.weatherHistory == null) {
+                                chatMsg(sender, "&eThe weather history is off, so there is no recorded weather to replay");
+                            }
+                        }
+                        plugin.getSettingsProfile(profileName).setWeatherReplay(replayDate);
+                        chatMsg(sender, "&aSet settings." + profileName + ".weather-replay: " + (replayDate != null ? replayDate : "off"));
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime setweatherreplay (<date>|off) [<profile>]");
+                    chatMsg(sender, "&6Date should be in the ISO date format");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("weatherat")) {
+                String[] cityArgs = asQuoteAwareArgs(args);
+
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (cityArgs.length == 3) {
+                    String cityName = cityArgs[1];
+
+                    doWeatherAt:
+                    {
+                        LocalDateTime dateTime;
+                        try {
+                            dateTime = LocalDateTime.parse(cityArgs[2], DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+                        }
+                        catch (DateTimeParseException ex) {
+                            chatMsg(sender, "&cDate-time was not formatted correctly");
+                            break doWeatherAt;
+                        }
+                        WeatherHistory history = plugin.weatherHistory;
+                        if (history == null) {
+                            chatMsg(sender, "&cThe weather history is off");
+                            break doWeatherAt;
+                        }
+                        WeatherState weather = history.weatherAt(cityName, dateTime.atZone(plugin.clock.getZone()).toEpochSecond());
+                        if (weather == null) {
+                            chatMsg(sender, "&eNo weather was recorded for " + cityName + " around " + dateTime);
+                        }
+                        else {
+                            chatMsg(sender, "&aThe weather in " + cityName + " at " + dateTime + " was &e" + weather.name().toLowerCase());
+                        }
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime weatherat <city> <datetime>");
+                    chatMsg(sender, "&6City should quoted if it contains spaces, and the date-time should be in the ISO format");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("sethedgeweather")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 2 || args.length == 3) {
+                    String boolName = args[1];
+                    String profileName = args.length == 3 ? args[2] : "default";
+
+                    if (boolName.equalsIgnoreCase("true") || boolName.equalsIgnoreCase("false")) {
+                        boolean state = Boolean.parseBoolean(boolName);
+                        plugin.getSettingsProfile(profileName).setHedgeWeather(state);
+                        chatMsg(sender, "&aSet settings." + profileName + ".hedge-weather: " + state);
+                    }
+                    else {
+                        chatMsg(sender, "&cInvalid boolean: " + args[1]);
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime sethedgeweather true|false [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("setparent")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 2 || args.length == 3) {
+                    String parentName = args[1].equalsIgnoreCase("none") ? "" : args[1];
+                    String profileName = args.length == 3 ? args[2] : "default";
+
+                    if (!parentName.isEmpty() && !plugin.getSettingsProfileNames().contains(parentName)) {
+                        chatMsg(sender, "&cUnknown profile " + parentName);
+                    }
+                    else if (!parentName.isEmpty() && plugin.getSettingsProfile(parentName).getLineage().contains(profileName)) {
+                        chatMsg(sender, "&c" + parentName + " already inherits from " + profileName);
+                    }
+                    else {
+                        plugin.getSettingsProfile(profileName).setParent(parentName);
+                        chatMsg(sender, "&aSet settings." + profileName + ".parent: " + (parentName.isEmpty() ? "none" : parentName));
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime setparent (<parent>|none) [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("latency")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 1) {
+                    for (String providerName : Arrays.asList(PluginUtils.PRIMARY_PROVIDER, PluginUtils.SECONDARY_PROVIDER)) {
+                        LatencyStats latency = plugin.weatherHedger.getLatency(providerName);
+                        if (latency.size() < LatencyStats.MIN_SAMPLES) {
+                            chatMsg(sender, "&a" + providerName + ": &etoo few requests yet (" + latency.size() + ")");
+                        }
+                        else {
+                            chatMsg(sender, "&a" + providerName + ": &ep50 " + latency.percentile(0.5) + "ms, p95 "
+                                    + latency.percentile(0.95) + "ms over " + latency.size() + " requests");
+                        }
+                    }
+                    chatMsg(sender, "&aHedge delay: &e" + plugin.weatherHedger.getHedgeDelayMillis(PluginUtils.PRIMARY_PROVIDER) + "ms");
+                    chatMsg(sender, "&aTransferred: &e" + plugin.httpCache.getBytes() / 1024 + " KB over " + plugin.httpCache.getRequests()
+                            + " requests, " + plugin.httpCache.getUnchanged() + " not modified");
+                }
+                else {
+                    chatMsg(sender, "&6/realtime latency");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("setsolartime")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 2 || args.length == 3) {
+                    String boolName = args[1];
+                    String profileName = args.length == 3 ? args[2] : "default";
+
+                    if (boolName.equalsIgnoreCase("true") || boolName.equalsIgnoreCase("false")) {
+                        boolean state = Boolean.parseBoolean(boolName);
+                        plugin.getSettingsProfile(profileName).setSolarTime(state);
+                        chatMsg(sender, "&aSet settings." + profileName + ".solar-time: " + state);
+                    }
+                    else {
+                        chatMsg(sender, "&cInvalid boolean: " + args[1]);
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime setsolartime true|false [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("setsyncmoon")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if (args.length == 2 || args.length == 3) {
+                    String boolName = args[1];
+                    String profileName = args.length == 3 ? args[2] : "default";
+
+                    if (boolName.equalsIgnoreCase("true") || boolName.equalsIgnoreCase("false")) {
+                        boolean state = Boolean.parseBoolean(boolName);
+                        plugin.getSettingsProfile(profileName).setSyncMoon(state);
+                        chatMsg(sender, "&aSet settings." + profileName + ".sync-moon: " + state);
+                    }
+                    else {
+                        chatMsg(sender, "&cInvalid boolean: " + args[1]);
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime setsyncmoon true|false [<profile>]");
+                }
+            }
+            else if (args[0].equalsIgnoreCase("setlocation")) {
+                if (!sender.hasPermission("realtime.mod")) {
+                    chatMsg(sender, "&cYou don't have permission to do that");
+                }
+                else if ((args.length == 2 || args.length == 3) && args[1].equalsIgnoreCase("city")) {
+                    String profileName = args.length == 3 ? args[2] : "default";
+                    SettingsProfile profile = plugin.getSettingsProfile(profileName);
+                    profile.setLatitude(Double.NaN);
+                    profile.setLongitude(Double.NaN);
+                    chatMsg(sender, "&aSet settings." + profileName + ".latitude/longitude: weather city");
+                }
+                else if (args.length == 3 || args.length == 4) {
+                    String profileName = args.length == 4 ? args[3] : "default";
+
+                    doSetLocation:
+                    {
+                        double latitude;
+                        double longitude;
+                        try {
+                            latitude = Double.parseDouble(args[1]);
+                            longitude = Double.parseDouble(args[2]);
+                            if (Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+                                chatMsg(sender, "&cCoordinates are out of range");
+                                break doSetLocation;
+                            }
+                        }
+                        catch (NumberFormatException ex) {
+                            chatMsg(sender, "&cCoordinates must be real numbers");
+                            break doSetLocation;
+                        }
+                        SettingsProfile profile = plugin.getSettingsProfile(profileName);
+                        profile.setLatitude(latitude);
+                        profile.setLongitude(longitude);
+                        chatMsg(sender, "&aSet settings." + profileName + ".latitude/longitude: " + latitude + ", " + longitude);
+                    }
+                }
+                else {
+                    chatMsg(sender, "&6/realtime setlocation (<lat> <lon>|city) [<profile>]");
+                    chatMsg(sender, "&6Latitude and longitude should be in degrees");
+                }
+            }
             else if (args[0].equalsIgnoreCase("listprofiles")) {
                 if (!sender.hasPermission("realtime.mod")) {
                     chatMsg(sender, "&cYou don't have permission to do that");
@@ -543,6 +1029,37 @@ public class PluginCmds {
         return false;
     }
 
+    /**
+     * Completes the city being typed as the second argument using the city gazetteer.
+     * Cities with spaces are quoted, and the quoted words already typed are left out of the completions.
+     *
+     * @param args command arguments, with the city starting at the second
+     *
+     * @return completions of the last argument
+     */
+    private static List<String> completeCity(String[] args) {
+        Gazetteer gazetteer = RealTimePlugin.getInstance().gazetteer;
+        if (gazetteer == null) {
+            return Collections.emptyList();
+        }
+        String typed = String.join(" ", Arrays.asList(args).subList(1, args.length));
+        boolean quoted = typed.startsWith("\"");
+        String prefix = quoted ? typed.substring(1) : typed;
+        int lastArgStart = typed.length() - args[args.length - 1].length();
+
+        List<String> completions = new ArrayList<>();
+        for (String cityName : gazetteer.complete(prefix, CITY_COMPLETIONS)) {
+            String completion = quoted || cityName.contains(" ") ? "\"" + cityName + "\"" : cityName;
+            if (!quoted || lastArgStart == 0) {
+                completions.add(completion);
+            }
+            else if (completion.length() > lastArgStart) {
+                completions.add(completion.substring(lastArgStart));
+            }
+        }
+        return completions;
+    }
+
     /**
      * Tab completes the plugin's commands.
      */
@@ -555,18 +1072,36 @@ public class PluginCmds {
                     if ("forgetworld".startsWith(args[0])) options.add("forgetworld");
                     if ("forcesync".startsWith(args[0])) options.add("forcesync");
                     if ("fetchweather".startsWith(args[0])) options.add("fetchweather");
+                    if ("trace".startsWith(args[0])) options.add("trace");
+                    if ("weatherat".startsWith(args[0])) options.add("weatherat");
+                    if ("latency".startsWith(args[0])) options.add("latency");
+                    if ("overrides".startsWith(args[0])) options.add("overrides");
                     if ("getsynctime".startsWith(args[0])) options.add("getsynctime");
                     if ("gettimezero".startsWith(args[0])) options.add("gettimezero");
                     if ("gettimeoffset".startsWith(args[0])) options.add("gettimeoffset");
                     if ("gettimespeed".startsWith(args[0])) options.add("gettimespeed");
+                    if ("getspeedcurve".startsWith(args[0])) options.add("getspeedcurve");
                     if ("getsyncweather".startsWith(args[0])) options.add("getsyncweather");
                     if ("getweathercity".startsWith(args[0])) options.add("getweathercity");
+                    if ("getweatherreplay".startsWith(args[0])) options.add("getweatherreplay");
+                    if ("gethedgeweather".startsWith(args[0])) options.add("gethedgeweather");
+                    if ("getparent".startsWith(args[0])) options.add("getparent");
+                    if ("getsolartime".startsWith(args[0])) options.add("getsolartime");
+                    if ("getsyncmoon".startsWith(args[0])) options.add("getsyncmoon");
+                    if ("getlocation".startsWith(args[0])) options.add("getlocation");
                     if ("setsynctime".startsWith(args[0])) options.add("setsynctime");
                     if ("settimezero".startsWith(args[0])) options.add("settimezero");
                     if ("settimeoffset".startsWith(args[0])) options.add("settimeoffset");
                     if ("settimespeed".startsWith(args[0])) options.add("settimespeed");
+                    if ("setspeedcurve".startsWith(args[0])) options.add("setspeedcurve");
                     if ("setsyncweather".startsWith(args[0])) options.add("setsyncweather");
                     if ("setweathercity".startsWith(args[0])) options.add("setweathercity");
+                    if ("setweatherreplay".startsWith(args[0])) options.add("setweatherreplay");
+                    if ("sethedgeweather".startsWith(args[0])) options.add("sethedgeweather");
+                    if ("setparent".startsWith(args[0])) options.add("setparent");
+                    if ("setsolartime".startsWith(args[0])) options.add("setsolartime");
+                    if ("setsyncmoon".startsWith(args[0])) options.add("setsyncmoon");
+                    if ("setlocation".startsWith(args[0])) options.add("setlocation");
                     if ("listprofiles".startsWith(args[0])) options.add("listprofiles");
                     if ("copyprofile".startsWith(args[0])) options.add("copyprofile");
                     if ("resetprofile".startsWith(args[0])) options.add("resetprofile");
@@ -586,16 +1121,54 @@ public class PluginCmds {
                             }
                         }
                     }
-                    else if (args[0].equalsIgnoreCase("setsynctime") || args[0].equalsIgnoreCase("setsyncweather")) {
+                    else if (args[0].equalsIgnoreCase("setsynctime")
+                            || args[0].equalsIgnoreCase("setsyncweather")
+                            || args[0].equalsIgnoreCase("sethedgeweather")
+                            || args[0].equalsIgnoreCase("setsolartime")
+                            || args[0].equalsIgnoreCase("setsyncmoon")) {
                         if ("true".startsWith(args[1])) options.add("true");
                         if ("false".startsWith(args[1])) options.add("false");
                     }
+                    else if (args[0].equalsIgnoreCase("setlocation")) {
+                        if ("city".startsWith(args[1])) options.add("city");
+                    }
+                    else if (args[0].equalsIgnoreCase("setweathercity") || args[0].equalsIgnoreCase("weatherat")) {
+                        options.addAll(completeCity(args));
+                    }
+                    else if (args[0].equalsIgnoreCase("setweatherreplay") || args[0].equalsIgnoreCase("setspeedcurve")) {
+                        if ("off".startsWith(args[1])) options.add("off");
+                    }
+                    else if (args[0].equalsIgnoreCase("setparent")) {
+                        if ("none".startsWith(args[1])) options.add("none");
+                        for (String profileName : RealTimePlugin.getInstance().getSettingsProfileNames()) {
+                            if (profileName.startsWith(args[1])) options.add(profileName);
+                        }
+                    }
+                    else if (args[0].equalsIgnoreCase("trace")) {
+                        if ("dump".startsWith(args[1])) options.add("dump");
+                        for (String profileName : RealTimePlugin.getInstance().getSettingsProfileNames()) {
+                            if (profileName.startsWith(args[1])) options.add(profileName);
+                        }
+                        for (World world : RealTimePlugin.getInstance().getServer().getWorlds()) {
+                            String worldName = world.getName();
+                            if (worldName.startsWith(args[1]) && !options.contains(worldName)) {
+                                options.add(worldName);
+                            }
+                        }
+                    }
                     else if (args[0].equalsIgnoreCase("getsynctime")
                             || args[0].equalsIgnoreCase("gettimezero")
                             || args[0].equalsIgnoreCase("gettimeoffset")
                             || args[0].equalsIgnoreCase("gettimespeed")
+                            || args[0].equalsIgnoreCase("getspeedcurve")
                             || args[0].equalsIgnoreCase("getsyncweather")
                             || args[0].equalsIgnoreCase("getweathercity")
+                            || args[0].equalsIgnoreCase("getweatherreplay")
+                            || args[0].equalsIgnoreCase("gethedgeweather")
+                            || args[0].equalsIgnoreCase("getparent")
+                            || args[0].equalsIgnoreCase("getsolartime")
+                            || args[0].equalsIgnoreCase("getsyncmoon")
+                            || args[0].equalsIgnoreCase("getlocation")
                             || args[0].equalsIgnoreCase("copyprofile")
                             || args[0].equalsIgnoreCase("resetprofile")) {
                         for (String profileName : RealTimePlugin.getInstance().getSettingsProfileNames()) {
@@ -604,14 +1177,30 @@ public class PluginCmds {
                     }
                 }
             }
+            else if (args.length > 3 && (args[0].equalsIgnoreCase("setweathercity") || args[0].equalsIgnoreCase("weatherat"))
+                    && sender.hasPermission("realtime.mod")
+                    && args[1].startsWith("\"") && asQuoteAwareArgs(args).length == args.length) {
+                options.addAll(completeCity(args));
+            }
             else if (args.length == 3) {
                 if (sender.hasPermission("realtime.mod")) {
-                    if (args[0].equalsIgnoreCase("setsynctime")
+                    if (args[1].startsWith("\"") && !args[1].endsWith("\"") || args[1].equals("\"")) {
+                        if (args[0].equalsIgnoreCase("setweathercity") || args[0].equalsIgnoreCase("weatherat")) {
+                            options.addAll(completeCity(args));
+                        }
+                    }
+                    else if (args[0].equalsIgnoreCase("setsynctime")
                             || args[0].equalsIgnoreCase("settimezero")
                             || args[0].equalsIgnoreCase("settimeoffset")
                             || args[0].equalsIgnoreCase("settimespeed")
+                            || args[0].equalsIgnoreCase("setspeedcurve")
                             || args[0].equalsIgnoreCase("setsyncweather")
                             || args[0].equalsIgnoreCase("setweathercity")
+                            || args[0].equalsIgnoreCase("setweatherreplay")
+                            || args[0].equalsIgnoreCase("sethedgeweather")
+                            || args[0].equalsIgnoreCase("setparent")
+                            || args[0].equalsIgnoreCase("setsolartime")
+                            || args[0].equalsIgnoreCase("setsyncmoon")
                             || args[0].equalsIgnoreCase("copyprofile")) {
                         for (String profileName : RealTimePlugin.getInstance().getSettingsProfileNames()) {
                             if (profileName.startsWith(args[2])) options.add(profileName);
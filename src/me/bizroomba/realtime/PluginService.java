@@ -0,0 +1,60 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.World;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Objects;
+
+/**
+ * The plugin's implementation of the real time service.
+ */
+public class PluginService implements RealTimeService {
+
+    private final RealTimePlugin plugin;
+
+    PluginService(RealTimePlugin plugin) {
+        this.plugin = Objects.requireNonNull(plugin);
+    }
+
+    private GameClock getClock(String profileName) throws IllegalArgumentException {
+        CompiledProfile profile = plugin.getCompiledSettings().getProfile(profileName);
+        if (profile == null) {
+            throw new IllegalArgumentException("profile is not defined: " + profileName);
+        }
+        return profile.getClock();
+    }
+
+    @Override
+    public long gameTimeAt(String profileName, Instant instant) throws IllegalArgumentException {
+        return getClock(profileName).gameTimeAt(LocalDateTime.ofInstant(instant, plugin.clock.getZone()));
+    }
+
+    @Override
+    public long[] gameTimesAt(String profileName, Instant... instants) throws IllegalArgumentException {
+        GameClock clock = getClock(profileName);
+        ZoneId zone = plugin.clock.getZone();
+        long[] gametimes = new long[instants.length];
+        for (int i = 0; i < instants.length; i++) {
+            gametimes[i] = clock.gameTimeAt(LocalDateTime.ofInstant(instants[i], zone));
+        }
+        return gametimes;
+    }
+
+    @Override
+    public WeatherState currentWeather(World world) {
+        CompiledProfile profile = plugin.getCompiledSettings().getProfileFor(world.getName());
+        if (profile == null) {
+            return null;
+        }
+        ScheduledOverride override = plugin.overrideSchedule.getOverrideFor(world.getName(), profile.getName());
+        if (override != null && override.getWeather() != null) {
+            return override.getWeather();
+        }
+        if (!profile.isSyncWeather()) {
+            return null;
+        }
+        return plugin.getProfileWeather(profile, LocalDateTime.now(plugin.clock));
+    }
+}
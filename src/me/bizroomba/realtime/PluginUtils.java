@@ -2,21 +2,37 @@ package me.bizroomba.realtime;
 
 import org.bukkit.GameRule;
 import org.bukkit.World;
+import org.bukkit.entity.Player;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.ProtocolException;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.time.LocalDateTime;
-import java.time.temporal.ChronoUnit;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Functions to carry out the plugin's synchronization features.
@@ -28,14 +44,50 @@ public class PluginUtils {
      */
     public static final double MC_RL_RATIO = 20 / 72d;
 
+    /**
+     * The name the primary weather provider's response times are recorded under.
+     */
+    public static final String PRIMARY_PROVIDER = "openweathermap.org";
+
+    /**
+     * The name the secondary weather provider's response times are recorded under.
+     */
+    public static final String SECONDARY_PROVIDER = "wttr.in";
+
+    private static final String WEATHER_ENDPOINT = "weather";
+    private static final String FORECAST_ENDPOINT = "forecast";
+    private static final int HTTP_TIMEOUT_MILLIS = 10_000;
+    // how many of the leader's slowest refresh periods a shared record may go without an update
+    private static final int SHARED_WEATHER_STALE_PERIODS = 3;
+
+    // counted for the sync tick's flight recorder event, only used on the main thread
+    private static int tickWorldsUpdated = 0;
+    private static int tickWritesSkipped = 0;
+
     private PluginUtils() {
     }
 
     /**
      * Synchronizes the gametime of affected worlds to the system time.
+     * With sync workers, the targets are computed off the main thread and applied a tick later.
+     * The published weather fetches are applied and the scheduled overrides are advanced first.
+     * Each call is recorded as a flight recorder event.
      */
     public static void syncWorldsToRealLife() {
-        syncWorldsToRealLifeInspected(false);
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        Object tickEvent = FlightRecorder.beginSyncTick();
+        tickWorldsUpdated = 0;
+        tickWritesSkipped = 0;
+        applyPublishedWeather();
+        plugin.overrideSchedule.advance(LocalDateTime.now(plugin.clock));
+        boolean pipelined = plugin.syncPipeline != null;
+        if (pipelined) {
+            plugin.syncPipeline.tick(plugin);
+        }
+        else {
+            syncWorldsToRealLifeInspected(false);
+        }
+        FlightRecorder.endSyncTick(tickEvent, tickWorldsUpdated, tickWritesSkipped, pipelined);
     }
 
     /**
@@ -47,46 +99,177 @@ public class PluginUtils {
 
     /**
      * Synchronizes the gametime of affected worlds to the system time.
-     * The inspector is given information created during the process.
+     * Profiles with equal game clocks share a single gametime computation,
+     * and the worlds of each profile are grouped in a single pass over the loaded worlds.
+     * Worlds without players are skipped when idle worlds are suspended.
+     * Worlds whose day phase or weather changed are recorded in the sync trace.
      *
-     * @param inspect time syncing inspector or null
+     * @param inspect true to also sync idle worlds and trace the gametime of every profile and every world
      */
     public static void syncWorldsToRealLifeInspected(boolean inspect) {
         RealTimePlugin plugin = RealTimePlugin.getInstance();
-        LocalDateTime now = LocalDateTime.now();
+        if (inspect) {
+            applyPublishedWeather();
+        }
+        LocalDateTime now = LocalDateTime.now(plugin.clock);
 
-        if (inspect) PluginCmds.shoutMsg("realtime.mod", "&aSystem time is &e" + now);
+        CompiledSettings settings = plugin.getCompiledSettings();
 
-        for (SettingsProfile profile : plugin.getSettingsProfiles()) {
+        Set<World> occupiedWorlds = null;
+        if (plugin.isSuspendIdleWorlds() && !inspect) {
+            occupiedWorlds = new HashSet<>();
+            for (Player player : plugin.getServer().getOnlinePlayers()) {
+                occupiedWorlds.add(player.getWorld());
+            }
+        }
 
-            long millis = ChronoUnit.MILLIS.between(profile.getTimeZero(), now);
-            long rlt = (long) (Math.floor((millis / 1000d) * MC_RL_RATIO) + 18000);
-            long gametime = (long) ((profile.getTimeSpeed() * rlt) + profile.getTimeOffset());
+        Map<CompiledProfile, List<World>> profileWorlds = new HashMap<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            if (occupiedWorlds != null && !occupiedWorlds.contains(world)) {
+                continue;
+            }
+            CompiledProfile profile = settings.getProfileFor(world.getName());
+            if (profile != null) {
+                profileWorlds.computeIfAbsent(profile, k -> new ArrayList<>()).add(world);
+            }
+        }
 
-            String cityName = profile.getWeatherCity();
-            WeatherState weather = plugin.getRealLifeWeather(cityName);
+        Map<GameClock, Long> gametimes = new HashMap<>();
 
-            if (inspect)
-                PluginCmds.shoutMsg("realtime.mod", "&a%s: &e%s &arlt, &e%s &amct", profile.getName(), rlt, gametime);
+        for (CompiledProfile profile : settings.getProfiles()) {
 
-            for (World affectedWorld : profile.getAffectedLoadedWorlds()) {
+            List<World> affectedWorlds = profileWorlds.getOrDefault(profile, Collections.emptyList());
+            if (affectedWorlds.isEmpty() && !inspect) {
+                continue;
+            }
 
-                if (profile.isSyncTime() && Optional.ofNullable(affectedWorld.getGameRuleValue(GameRule.DO_DAYLIGHT_CYCLE)).orElse(true)) {
-                    affectedWorld.setFullTime(gametime);
-                }
-                if (profile.isSyncWeather() && Optional.ofNullable(affectedWorld.getGameRuleValue(GameRule.DO_WEATHER_CYCLE)).orElse(true)) {
-                    weather.applyTo(affectedWorld);
-                }
+            GameClock clock = profile.getClock();
+            long gametime = gametimes.computeIfAbsent(clock, c -> c.gameTimeAt(now));
+
+            WeatherState weather = plugin.getProfileWeather(profile, now);
+
+            if (inspect) plugin.syncTrace.record(TraceKind.CLOCK, profile.getName(), profile.getName(), gametime, weather, null);
+
+            for (World affectedWorld : affectedWorlds) {
+                syncWorld(affectedWorld, profile, gametime, weather, TraceKind.SYNC, inspect);
+            }
+
+        }
+    }
+
+    /**
+     * Synchronizes a single world to real life right away, for example to catch up
+     * a suspended world when a player enters it.
+     *
+     * @param world a loaded world
+     */
+    public static void syncWorldToRealLife(World world) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        CompiledProfile profile = plugin.getCompiledSettings().getProfileFor(world.getName());
+        if (profile != null) {
+            LocalDateTime now = LocalDateTime.now(plugin.clock);
+            long gametime = profile.getClock().gameTimeAt(now);
+            syncWorld(world, profile, gametime, plugin.getProfileWeather(profile, now), TraceKind.CATCH_UP, false);
+        }
+    }
+
+    /**
+     * Applies the gametime and weather of a profile to one of its worlds, unless the world's
+     * gamerules disable the daylight or weather cycle, and calls a sync event if the world's
+     * day phase or weather state changed. The weather is only set when the world doesn't already show it.
+     * An active scheduled override of the world forces its time and weather regardless of the profile and gamerules.
+     *
+     * @param world    a loaded world with the profile
+     * @param profile  the world's compiled profile
+     * @param gametime the profile's gametime, ignored if the profile doesn't sync time
+     * @param weather  the real life weather of the profile's city
+     * @param kind     the kind of sync recorded in the sync trace
+     * @param inspect  true to record a regular sync in the sync trace even if the world's day phase and weather didn't change
+     */
+    static void syncWorld(World world, CompiledProfile profile, long gametime, WeatherState weather, TraceKind kind, boolean inspect) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+
+        boolean syncTime = profile.isSyncTime() && Optional.ofNullable(world.getGameRuleValue(GameRule.DO_DAYLIGHT_CYCLE)).orElse(true);
+        boolean syncWeather = profile.isSyncWeather() && Optional.ofNullable(world.getGameRuleValue(GameRule.DO_WEATHER_CYCLE)).orElse(true);
+        ScheduledOverride override = plugin.overrideSchedule.getOverrideFor(world.getName(), profile.getName());
+        if (override != null && override.getTime() >= 0) {
+            gametime = override.applyTime(profile.isSyncTime() ? gametime : world.getFullTime());
+            syncTime = true;
+        }
+        if (override != null && override.getWeather() != null) {
+            weather = override.getWeather();
+            syncWeather = true;
+        }
+
+        applySyncTarget(world, profile.getName(), gametime, syncTime ? DayPhase.of(gametime) : null,
+                syncWeather ? weather : null, kind, inspect, true);
+    }
+
+    /**
+     * Applies a resolved sync target to a world: sets its gametime, sets its weather unless the world
+     * already shows it, and calls a sync event if the world's day phase or weather state changed.
+     *
+     * @param world       a loaded world
+     * @param profileName the name of the world's profile
+     * @param gametime    the target gametime, ignored if the phase is null
+     * @param phase       the day phase of the target gametime, or null if the world's time isn't synced
+     * @param weather     the target weather, or null if the world's weather isn't synced
+     * @param kind        the kind of sync recorded in the sync trace
+     * @param inspect     true to record a regular sync in the sync trace even if the world's day phase and weather didn't change
+     * @param mayChange   false if the target's day phase and weather are known to be the ones already applied,
+     *                    which skips looking them up
+     */
+    static void applySyncTarget(World world, String profileName, long gametime, DayPhase phase, WeatherState weather,
+                                TraceKind kind, boolean inspect, boolean mayChange) {
+        if (phase != null) {
+            world.setFullTime(gametime);
+        }
+        if (weather != null) {
+            if (!weather.isShownBy(world)) {
+                weather.applyTo(world);
+            }
+            else {
+                tickWritesSkipped++;
             }
+        }
+        tickWorldsUpdated++;
+        // regular syncs that change nothing would flush the fetch decisions out of the trace
+        boolean traced = inspect || kind != TraceKind.SYNC;
+        if (!mayChange && !traced) {
+            return;
+        }
 
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        String worldName = world.getName();
+        DayPhase previousPhase = plugin.appliedPhases.get(worldName);
+        WeatherState previousWeather = plugin.appliedWeather.get(worldName);
+        DayPhase appliedPhase = phase != null ? phase : previousPhase;
+        WeatherState appliedWeather = weather != null ? weather : previousWeather;
+
+        boolean changed = false;
+        if (appliedPhase != previousPhase) {
+            plugin.appliedPhases.put(worldName, appliedPhase);
+            changed = true;
+        }
+        if (appliedWeather != previousWeather) {
+            plugin.appliedWeather.put(worldName, appliedWeather);
+            changed = true;
+        }
+        if (changed || traced) {
+            plugin.syncTrace.record(kind, worldName, profileName, phase != null ? gametime : -1, weather, null);
+        }
+        if (changed && RealTimeSyncEvent.hasListeners()) {
+            plugin.getServer().getPluginManager().callEvent(new RealTimeSyncEvent(world, profileName,
+                    previousPhase, appliedPhase, previousWeather, appliedWeather));
         }
     }
 
     /**
      * Updates the plugin's real-life weather cache using openweathermap.org.
-     * The inspector is given information created during the process.
+     * Nothing is requested while the endpoint's circuit breaker is open.
+     * Every fetch and skipped fetch is recorded in the sync trace.
      *
-     * @param inspect weather syncing inspector or null
+     * @param inspect true if the fetch was requested manually
      */
     public static void fetchRealLifeWeatherInspected(boolean inspect) {
         RealTimePlugin plugin = RealTimePlugin.getInstance();
@@ -95,22 +278,399 @@ public class PluginUtils {
             return;
         }
 
-        for (SettingsProfile profile : plugin.getSettingsProfiles()) {
-            String cityName = profile.getWeatherCity();
-            if (cityName.isEmpty()) {
+        boolean forecast = plugin.isWeatherForecast();
+        long now = plugin.clock.millis();
+        boolean open = plugin.getCircuitBreaker(getWeatherEndpoint(forecast)).isOpen(now);
+        boolean leader = isWeatherLeader(plugin);
+        Set<String> staleCities = leader ? Collections.emptySet() : readSharedWeather(plugin);
+        for (String cityName : plugin.getCompiledSettings().getWeatherCities()) {
+            if (!leader && !staleCities.contains(cityName)) {
+                plugin.syncTrace.record(TraceKind.FETCH_SKIPPED, cityName, null, -1, null, "another server fetches");
+            }
+            else if (open) {
+                plugin.syncTrace.record(TraceKind.FETCH_SKIPPED, cityName, null, -1, null, "circuit open");
+            }
+            else if (!plugin.fetchQuota.tryAcquire(now)) {
+                plugin.syncTrace.record(TraceKind.FETCH_SKIPPED, cityName, null, -1, null, "quota used up");
+            }
+            else {
+                fetchCityWeather(apiKey, cityName, forecast);
+            }
+        }
+    }
+
+    /**
+     * Fetches the weather of the cities that are due for a refresh, within the api quota.
+     * Cities with players in their worlds are refreshed every fetch period and idle cities back off.
+     * When another server leads the shared weather cache, its weather is read from the cache instead,
+     * and only the cities the leader stopped updating are fetched here.
+     */
+    public static void scheduleRealLifeWeather() {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        String apiKey = plugin.getWeatherApiKey();
+        if (apiKey.isEmpty()) {
+            return;
+        }
+        if (!isWeatherLeader(plugin)) {
+            for (String cityName : readSharedWeather(plugin)) {
+                fetchStaleWeather(plugin, apiKey, cityName);
+            }
+            return;
+        }
+        boolean forecast = plugin.isWeatherForecast();
+        long periodMillis = getWeatherPeriodMillis(plugin, forecast);
+        long now = plugin.clock.millis();
+        if (plugin.getCircuitBreaker(getWeatherEndpoint(forecast)).isOpen(now)) {
+            return;
+        }
+
+        CompiledSettings settings = plugin.getCompiledSettings();
+        Set<String> activeCities = new HashSet<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            CompiledProfile profile = settings.getProfileFor(player.getWorld().getName());
+            if (profile != null && profile.isSyncWeather() && !profile.getWeatherCity().isEmpty()) {
+                activeCities.add(profile.getWeatherCity());
+            }
+        }
+
+        List<String> dueCities = plugin.weatherScheduler.pollDue(settings.getWeatherCities(), activeCities,
+                periodMillis, now, plugin.fetchQuota, plugin.isWeatherFetchOnDemand());
+        for (String cityName : dueCities) {
+            fetchCityWeather(apiKey, cityName, forecast);
+        }
+    }
+
+    /**
+     * Immediately fetches the weather of the city a world's weather is synced to,
+     * if its cached weather is older than the fetch period and the api quota allows it.
+     * This is used when a player enters or is about to enter the world.
+     *
+     * @param world a loaded world
+     */
+    public static void fetchStaleWeatherFor(World world) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        CompiledProfile profile = plugin.getCompiledSettings().getProfileFor(world.getName());
+        if (profile == null || !profile.isSyncWeather() || profile.getWeatherCity().isEmpty()) {
+            return;
+        }
+        fetchStaleWeather(profile.getWeatherCity());
+    }
+
+    /**
+     * Immediately fetches the weather of a city if its cached weather is older than
+     * the fetch period or it was never fetched, and the api quota allows it.
+     * When another server leads the shared weather cache, the city is only fetched if its shared record is stale.
+     *
+     * @param cityName the city to fetch the weather for
+     */
+    public static void fetchStaleWeather(String cityName) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        String apiKey = plugin.getWeatherApiKey();
+        if (apiKey.isEmpty()) {
+            return;
+        }
+        if (!isWeatherLeader(plugin) && !readSharedWeather(plugin).contains(cityName)) {
+            return;
+        }
+        fetchStaleWeather(plugin, apiKey, cityName);
+    }
+
+    private static void fetchStaleWeather(RealTimePlugin plugin, String apiKey, String cityName) {
+        boolean forecast = plugin.isWeatherForecast();
+        long now = plugin.clock.millis();
+        if (plugin.getCircuitBreaker(getWeatherEndpoint(forecast)).isOpen(now)) {
+            return;
+        }
+        if (plugin.weatherScheduler.pollStale(cityName, getWeatherPeriodMillis(plugin, forecast), now, plugin.fetchQuota)) {
+            fetchCityWeather(apiKey, cityName, forecast);
+        }
+    }
+
+    /**
+     * Tests if this server fetches the weather itself, trying to take over the shared weather cache's leadership.
+     *
+     * @param plugin the plugin instance
+     *
+     * @return true if there is no shared weather cache or this server leads it
+     */
+    private static boolean isWeatherLeader(RealTimePlugin plugin) {
+        SharedWeatherCache cache = plugin.sharedWeatherCache;
+        if (cache == null) {
+            return true;
+        }
+        boolean wasLeader = cache.isLeader();
+        boolean leader = cache.tryLead();
+        if (leader && !wasLeader) {
+            plugin.getLogger().info("Now fetching the weather for the shared weather cache");
+        }
+        return leader;
+    }
+
+    /**
+     * Updates the plugin's real-life weather and coordinates caches from the shared weather cache.
+     * Records the leader hasn't updated for a few of its slowest refresh periods are stale, for example
+     * because the leader hangs or doesn't use the city, so they are skipped and returned to be fetched here.
+     *
+     * @param plugin the plugin instance
+     *
+     * @return the cities whose records are stale
+     */
+    private static Set<String> readSharedWeather(RealTimePlugin plugin) {
+        long staleMillis = SHARED_WEATHER_STALE_PERIODS
+                * (getWeatherPeriodMillis(plugin, plugin.isWeatherForecast()) << WeatherScheduler.MAX_IDLE_LEVEL);
+        long now = plugin.clock.millis();
+        Set<String> staleCities = new HashSet<>();
+        boolean coordsChanged = false;
+        for (String cityName : plugin.getCompiledSettings().getWeatherCities()) {
+            SharedWeatherCache.Record record = plugin.sharedWeatherCache.read(cityName);
+            if (record == null) {
                 continue;
             }
-            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
-                String json = requestOpenWeatherMapData(apiKey, cityName);
-                WeatherState fetchedWeather = parseOpenWeatherMapData(json);
+            if (now - record.getUpdatedMillis() > staleMillis) {
+                plugin.fetchWarnings.record("The shared weather cache's leader stopped updating some cities, they are fetched by this server");
+                staleCities.add(cityName);
+                continue;
+            }
+            // the leader writes a record every time it fetches the city, so an unchanged sequence has nothing new
+            Long previousSequence = plugin.sharedWeatherSequences.put(cityName, record.getSequence());
+            if (previousSequence != null && previousSequence == record.getSequence()) {
+                continue;
+            }
+            if (record.getWeather() != null) {
+                setRealLifeWeather(cityName, record.getWeather());
+                recordWeatherHistory(plugin, cityName, record.getWeather());
+            }
+            if (record.getCoords() != null) {
+                double[] previousCoords = plugin.realLifeCoords.put(cityName, record.getCoords());
+                coordsChanged |= !Arrays.equals(previousCoords, record.getCoords());
+            }
+        }
+        if (coordsChanged) {
+            plugin.recompileSettings();
+        }
+        return staleCities;
+    }
+
+    /**
+     * Writes a city's cached weather and coordinates to the shared weather cache if this server leads it.
+     *
+     * @param plugin   the plugin instance
+     * @param cityName the city whose weather is shared
+     */
+    private static void writeSharedWeather(RealTimePlugin plugin, String cityName) {
+        SharedWeatherCache cache = plugin.sharedWeatherCache;
+        if (cache != null && cache.isLeader()) {
+            if (!cache.write(cityName, plugin.realLifeWeather.get(cityName), plugin.realLifeCoords.get(cityName), plugin.clock.millis())) {
+                plugin.fetchWarnings.record("The shared weather cache has no room for more cities");
+            }
+        }
+    }
+
+    private static long getWeatherPeriodMillis(RealTimePlugin plugin, boolean forecast) {
+        return (forecast ? plugin.getWeatherForecastPeriod() : plugin.getWeatherFetchPeriod()) * 50L;
+    }
+
+    private static String getWeatherEndpoint(boolean forecast) {
+        return forecast ? FORECAST_ENDPOINT : WEATHER_ENDPOINT;
+    }
+
+    /**
+     * Switches the plugin's real-life weather cache to the currently forecasted weather states.
+     * This makes no requests to openweathermap.org.
+     */
+    public static void advanceRealLifeForecasts() {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        long now = plugin.clock.millis();
+        for (Map.Entry<String, WeatherForecast> entry : plugin.realLifeForecasts.entrySet()) {
+            WeatherState weather = entry.getValue().stateAt(now);
+            if (plugin.realLifeWeather.get(entry.getKey()) != weather) {
+                setRealLifeWeather(entry.getKey(), weather);
+                recordWeatherHistory(plugin, entry.getKey(), weather);
+                writeSharedWeather(plugin, entry.getKey());
+            }
+        }
+    }
 
-                plugin.getServer().getScheduler().runTask(plugin, () -> {
+    /**
+     * Asynchronously fetches the current weather or the forecast of a city from openweathermap.org
+     * and publishes it to the weather board, from which the next sync tick applies it.
+     * Failed requests are counted by the endpoint's circuit breaker and leave the last good weather cached.
+     * The current weather of cities whose profiles hedge is also requested from the secondary provider
+     * when the primary is slower than usual or fails, and the first good answer is used.
+     * Answers that didn't change since the last fetch aren't parsed, and the cached weather is published
+     * in their place, so the weather history and the shared weather cache show the city is still fetched.
+     *
+     * @param apiKey   the api key used to access the weather data
+     * @param cityName the city to fetch the weather for
+     * @param forecast true to fetch the multi-day forecast, else the current weather
+     */
+    private static void fetchCityWeather(String apiKey, String cityName, boolean forecast) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        String endpoint = getWeatherEndpoint(forecast);
+        CircuitBreaker breaker = plugin.getCircuitBreaker(endpoint);
+        if (!breaker.allowRequest(plugin.clock.millis())) {
+            plugin.syncTrace.record(TraceKind.FETCH_SKIPPED, cityName, null, -1, null, "circuit open");
+            return;
+        }
+        boolean hedged = !forecast && plugin.getCompiledSettings().isHedgedCity(cityName);
+        if (!plugin.realLifeWeather.containsKey(cityName) || forecast && !plugin.realLifeForecasts.containsKey(cityName)) {
+            // an unchanged answer is only useful while the last one is still cached
+            plugin.httpCache.forget(cityName);
+        }
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, () -> {
+            Object fetchEvent = FlightRecorder.beginWeatherFetch();
+            long startNanos = System.nanoTime();
+            String json;
+            String source = endpoint;
+            if (hedged) {
+                // the hedger reports the primary's own outcome to its breaker, and times its answers, even when it loses
+                WeatherHedger.Answer answer;
+                try {
+                    answer = plugin.weatherHedger.request(
+                            new WeatherHedger.Provider(PRIMARY_PROVIDER, plugin.weatherProvider),
+                            new WeatherHedger.Provider(SECONDARY_PROVIDER, plugin.secondaryWeatherProvider),
+                            endpoint, apiKey, cityName, data -> data.equals(WeatherProvider.NOT_MODIFIED)
+                                    || data.equals(WeatherProvider.FRESH)
+                                    || parseOpenWeatherMapData(parseOpenWeatherMapJson(data)) != null,
+                            good -> {
+                                if (good) {
+                                    breaker.recordSuccess();
+                                }
+                                else {
+                                    breaker.recordFailure(plugin.clock.millis());
+                                }
+                            });
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                json = answer.getJson();
+                if (answer.isSecondary()) {
+                    source = endpoint + " via " + answer.getProviderName();
+                }
+            }
+            else {
+                json = plugin.weatherProvider.request(endpoint, apiKey, cityName);
+            }
+            long latencyMillis = (System.nanoTime() - startNanos) / 1_000_000L;
+            if (json.equals(WeatherProvider.NOT_MODIFIED) || json.equals(WeatherProvider.FRESH)) {
+                if (!hedged) {
+                    breaker.recordSuccess();
+                }
+                // a fresh answer was served without a request, so it says nothing about the provider
+                if (!hedged && json.equals(WeatherProvider.NOT_MODIFIED)) {
+                    plugin.weatherHedger.getLatency(PRIMARY_PROVIDER).record(latencyMillis);
+                }
+                WeatherState cachedWeather = plugin.realLifeWeather.get(cityName);
+                if (cachedWeather != null) {
+                    plugin.weatherBoard.publish(cityName, cachedWeather, null, null);
+                }
+                boolean fresh = json.equals(WeatherProvider.FRESH);
+                String outcome = fresh ? "still fresh" : "not modified";
+                plugin.syncTrace.record(TraceKind.FETCH_SKIPPED, cityName, null, fresh ? -1 : latencyMillis, cachedWeather, source + " " + outcome);
+                FlightRecorder.endWeatherFetch(fetchEvent, cityName, source, outcome, 0);
+                return;
+            }
+            long parseStartNanos = System.nanoTime();
+            JSONObject root = parseOpenWeatherMapJson(json);
+            WeatherForecast fetchedForecast = forecast ? parseOpenWeatherMapForecast(root) : null;
+            WeatherState fetchedWeather = fetchedForecast != null
+                    ? fetchedForecast.stateAt(plugin.clock.millis())
+                    : parseOpenWeatherMapData(root);
+            double[] fetchedCoords = parseOpenWeatherMapCoords(root);
+            long parseNanos = System.nanoTime() - parseStartNanos;
+
+            if (fetchedWeather == null) {
+                plugin.httpCache.forget(cityName);
+                if (!hedged) {
+                    breaker.recordFailure(plugin.clock.millis());
+                }
+                if (json.isEmpty()) {
+                    plugin.syncTrace.record(TraceKind.FETCH_FAILED, cityName, null, latencyMillis, null, endpoint + " request failed");
+                    FlightRecorder.endWeatherFetch(fetchEvent, cityName, source, "request failed", parseNanos);
+                }
+                else {
+                    plugin.syncTrace.record(TraceKind.FETCH_FAILED, cityName, null, latencyMillis, null, endpoint + " data unparseable");
+                    plugin.fetchWarnings.record("The " + endpoint + " data could not be parsed");
+                    FlightRecorder.endWeatherFetch(fetchEvent, cityName, source, "unparseable", parseNanos);
+                }
+                return;
+            }
+            if (!hedged) {
+                breaker.recordSuccess();
+                plugin.weatherHedger.getLatency(PRIMARY_PROVIDER).record(latencyMillis);
+            }
+            plugin.syncTrace.record(TraceKind.FETCH, cityName, null, latencyMillis, fetchedWeather, source);
+            FlightRecorder.endWeatherFetch(fetchEvent, cityName, source, "fetched", parseNanos);
+
+            plugin.weatherBoard.publish(cityName, fetchedWeather, fetchedForecast, fetchedCoords);
+        });
+    }
+
+    /**
+     * Applies the weather fetches published since the last call to the plugin's real-life weather,
+     * forecast and coordinates caches and to the weather history, all in one pass.
+     * This costs a single version check when nothing was published.
+     * Results of cities no profile uses anymore are dropped.
+     */
+    static void applyPublishedWeather() {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        List<WeatherBoard.Result> changes = plugin.weatherBoard.takeChanges();
+        if (changes.isEmpty()) {
+            return;
+        }
+        List<String> cityNames = plugin.getCompiledSettings().getWeatherCities();
+        boolean coordsChanged = false;
+        for (WeatherBoard.Result result : changes) {
+            String cityName = result.getCityName();
+            if (!cityNames.contains(cityName)) {
+                continue;
+            }
+            if (result.getForecast() != null) {
+                plugin.realLifeForecasts.put(cityName, result.getForecast());
+            }
+            setRealLifeWeather(cityName, result.getWeather());
+            recordWeatherHistory(plugin, cityName, result.getWeather());
+            if (result.getCoords() != null) {
+                double[] previousCoords = plugin.realLifeCoords.put(cityName, result.getCoords());
+                coordsChanged |= !Arrays.equals(previousCoords, result.getCoords());
+            }
+            writeSharedWeather(plugin, cityName);
+        }
+        if (coordsChanged) {
+            plugin.recompileSettings();
+        }
+    }
 
-                    if (inspect) PluginCmds.shoutMsg("realtime.mod", "&a%s: &a%s is &e%s&a, API: '&e%s&a'", profile.getName(), cityName, fetchedWeather, json);
+    /**
+     * Updates the plugin's real-life weather cache for a city,
+     * and calls a weather change event if the state changed.
+     *
+     * @param cityName the city whose weather is updated
+     * @param weather  the city's weather state
+     */
+    private static void setRealLifeWeather(String cityName, WeatherState weather) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        WeatherState previousWeather = plugin.realLifeWeather.put(cityName, weather);
+        if (previousWeather != weather && RealWeatherChangeEvent.hasListeners()) {
+            plugin.getServer().getPluginManager().callEvent(new RealWeatherChangeEvent(cityName, previousWeather, weather));
+        }
+    }
 
-                    plugin.realLifeWeather.put(cityName, fetchedWeather);
-                });
-            });
+    /**
+     * Records a city's observed weather in the weather history, if it is kept.
+     * Only weather this server fetched or read from a new shared record is recorded,
+     * so the history's hourly heartbeat means the city was actually observed.
+     *
+     * @param plugin   the plugin instance
+     * @param cityName the observed city
+     * @param weather  the city's weather state
+     */
+    private static void recordWeatherHistory(RealTimePlugin plugin, String cityName, WeatherState weather) {
+        WeatherHistory history = plugin.weatherHistory;
+        if (history != null) {
+            history.record(cityName, weather, plugin.clock.millis() / 1000L);
         }
     }
 
@@ -118,85 +678,330 @@ public class PluginUtils {
      * Requests the json weather data for a city from api.openweathermap.org.
      * This function is designed to be run asynchronously from spigot.
      *
+     * @param endpoint the api endpoint, either the current weather or the forecast
      * @param apiKey   the api key used to access the weather data
      * @param cityName the city to fetch the weather for
      *
-     * @return a json string returned from openweathermap.org or an empty string
+     * @return a json string returned from openweathermap.org, {@link WeatherProvider#NOT_MODIFIED},
+     * {@link WeatherProvider#FRESH}, or an empty string
      */
-    private static String requestOpenWeatherMapData(String apiKey, String cityName) {
-        RealTimePlugin plugin = RealTimePlugin.getInstance();
-        String protocol = "https://";
-        String link = "api.openweathermap.org/data/2.5/weather?q=%s&appid=%s";
+    static String requestOpenWeatherMapData(String endpoint, String apiKey, String cityName) {
+        String link = "https://api.openweathermap.org/data/2.5/" + endpoint + "?q=%s&appid=%s";
+        return readHttp(endpoint, String.format(link, cityName, apiKey), apiKey, cityName, PRIMARY_PROVIDER + " " + endpoint);
+    }
+
+    /**
+     * Requests the current weather of a city from wttr.in, which needs no api key,
+     * and converts it to the openweathermap.org format. The forecast endpoint is not supported.
+     * This function is designed to be run asynchronously from spigot.
+     *
+     * @param endpoint the api endpoint, only the current weather is supported
+     * @param apiKey   unused
+     * @param cityName the city to fetch the weather for
+     *
+     * @return the json weather data, {@link WeatherProvider#NOT_MODIFIED}, {@link WeatherProvider#FRESH},
+     * or an empty string if the request failed
+     */
+    @SuppressWarnings("unchecked") // json-simple's objects are raw maps and lists
+    static String requestWttrData(String endpoint, String apiKey, String cityName) {
+        if (!endpoint.equals(WEATHER_ENDPOINT)) {
+            return "";
+        }
+        String json;
         try {
-            URL url = new URL(protocol + String.format(link, cityName, apiKey));
+            json = readHttp(endpoint, "https://wttr.in/" + URLEncoder.encode(cityName, "UTF-8") + "?format=j1", "",
+                    cityName, SECONDARY_PROVIDER + " " + endpoint);
+        }
+        catch (UnsupportedEncodingException ex) {
+            return "";
+        }
+        if (json.equals(WeatherProvider.NOT_MODIFIED) || json.equals(WeatherProvider.FRESH)) {
+            return json;
+        }
+        JSONObject root = parseOpenWeatherMapJson(json);
 
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
+        String description = null;
+        Object objCurrent = root.get("current_condition");
+        if (objCurrent instanceof JSONArray && !((JSONArray) objCurrent).isEmpty() && ((JSONArray) objCurrent).get(0) instanceof JSONObject) {
+            Object objDesc = ((JSONObject) ((JSONArray) objCurrent).get(0)).get("weatherDesc");
+            if (objDesc instanceof JSONArray && !((JSONArray) objDesc).isEmpty() && ((JSONArray) objDesc).get(0) instanceof JSONObject) {
+                Object objValue = ((JSONObject) ((JSONArray) objDesc).get(0)).get("value");
+                if (objValue instanceof String) {
+                    description = (String) objValue;
+                }
+            }
+        }
+        if (description == null) {
+            return "";
+        }
 
-            int status = con.getResponseCode();
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            StringBuilder contents = new StringBuilder();
-            while ((inputLine = in.readLine()) != null) {
-                contents.append(inputLine);
+        JSONObject weatherMain = new JSONObject();
+        weatherMain.put("main", description);
+        JSONArray weather = new JSONArray();
+        weather.add(weatherMain);
+        JSONObject converted = new JSONObject();
+        converted.put("weather", weather);
+
+        Object objArea = root.get("nearest_area");
+        if (objArea instanceof JSONArray && !((JSONArray) objArea).isEmpty() && ((JSONArray) objArea).get(0) instanceof JSONObject) {
+            JSONObject area = (JSONObject) ((JSONArray) objArea).get(0);
+            try {
+                JSONObject coord = new JSONObject();
+                coord.put("lat", Double.parseDouble(String.valueOf(area.get("latitude"))));
+                coord.put("lon", Double.parseDouble(String.valueOf(area.get("longitude"))));
+                converted.put("coord", coord);
+            }
+            catch (NumberFormatException ignored) {
             }
-            in.close();
-            con.disconnect();
+        }
+        return converted.toJSONString();
+    }
 
-            return contents.toString();
+    /**
+     * Reads the body of a GET request, giving up after the connection or read timeout
+     * or as soon as the requesting thread is interrupted between reads.
+     * The body is requested gzip compressed and decompressed as it is read. The request is
+     * conditional on the validators of the last answer, and is not sent at all while that answer
+     * is fresh. Not modified answers and bodies identical to the last one are reported as such.
+     *
+     * @param endpoint   the api endpoint, for warnings
+     * @param link       the requested url
+     * @param secret     a secret in the url that is hidden in warnings, or empty
+     * @param cityName   the requested city, the last answers are remembered per city
+     * @param requestKey the provider and endpoint of the request
+     *
+     * @return the response body, {@link WeatherProvider#NOT_MODIFIED}, {@link WeatherProvider#FRESH} if the last
+     * answer is still fresh and nothing was requested, or an empty string if the request failed
+     */
+    private static String readHttp(String endpoint, String link, String secret, String cityName, String requestKey) {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        HttpCache.Validators last = plugin.httpCache.get(cityName, requestKey);
+        if (last != null && last.isFresh(plugin.clock.millis())) {
+            plugin.httpCache.countRequest(true);
+            return WeatherProvider.FRESH;
         }
-        catch (ProtocolException ex) {
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                PluginCmds.warningMsg("The protocol was invalid: " + ex.getMessage());
-            });
+        Object requestEvent = FlightRecorder.beginWeatherRequest();
+        int status = -1;
+        boolean gzip = false;
+        HttpCache.CountingInputStream counted = null;
+        String outcome = "failed";
+        HttpURLConnection con = null;
+        try {
+            URL url = new URL(link);
+
+            con = (HttpURLConnection) url.openConnection();
+            con.setRequestMethod("GET");
+            con.setConnectTimeout(HTTP_TIMEOUT_MILLIS);
+            con.setReadTimeout(HTTP_TIMEOUT_MILLIS);
+            con.setRequestProperty("Accept-Encoding", "gzip");
+            if (last != null && last.getEtag() != null) {
+                con.setRequestProperty("If-None-Match", last.getEtag());
+            }
+            if (last != null && last.getLastModified() != null) {
+                con.setRequestProperty("If-Modified-Since", last.getLastModified());
+            }
+
+            status = con.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && last != null) {
+                plugin.httpCache.put(cityName, requestKey, last.refreshed(con.getHeaderField("Cache-Control"), plugin.clock.millis()));
+                plugin.httpCache.countRequest(true);
+                outcome = "not modified";
+                return WeatherProvider.NOT_MODIFIED;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                plugin.fetchWarnings.record("The " + endpoint + " request failed with HTTP status " + status);
+                return "";
+            }
+            counted = plugin.httpCache.counting(con.getInputStream());
+            InputStream body = counted;
+            gzip = "gzip".equalsIgnoreCase(con.getContentEncoding());
+            if (gzip) {
+                body = new GZIPInputStream(body);
+            }
+            String contents;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                String inputLine;
+                StringBuilder builder = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        outcome = "interrupted";
+                        return "";
+                    }
+                    builder.append(inputLine);
+                }
+                contents = builder.toString();
+            }
+            long payloadHash = payloadHash(contents);
+            boolean unchanged = last != null && last.getPayloadHash() == payloadHash;
+            plugin.httpCache.put(cityName, requestKey, HttpCache.Validators.of(con.getHeaderField("ETag"),
+                    con.getHeaderField("Last-Modified"), con.getHeaderField("Cache-Control"), plugin.clock.millis(), payloadHash));
+            plugin.httpCache.countRequest(unchanged);
+            outcome = unchanged ? "same payload" : "ok";
+            return unchanged ? WeatherProvider.NOT_MODIFIED : contents;
         }
         catch (MalformedURLException ex) {
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                PluginCmds.warningMsg("The URL was malformed: " + protocol + String.format(link, cityName, "*****"));
-            });
+            plugin.fetchWarnings.record("The " + endpoint + " URL was malformed", hideSecret(link, secret));
         }
         catch (IOException ex) {
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                PluginCmds.warningMsg("There was an IO exception: " + ex.getMessage());
-            });
+            // keyed on the exception class, as the message names the city or address that failed
+            plugin.fetchWarnings.record("The " + endpoint + " request failed with " + ex.getClass().getSimpleName(),
+                    hideSecret(String.valueOf(ex.getMessage()), secret));
+        }
+        finally {
+            if (con != null) {
+                con.disconnect();
+            }
+            FlightRecorder.endWeatherRequest(requestEvent, cityName, requestKey, status,
+                    counted != null ? counted.getCount() : 0, gzip, outcome);
         }
         return "";
     }
 
     /**
-     * Parses a weather state from the json weather data fetched from api.openweathermap.org.
+     * Hashes a response body with 64 bit FNV-1a, to recognize an identical answer without keeping it.
+     */
+    private static long payloadHash(String contents) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < contents.length(); i++) {
+            hash ^= contents.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static String hideSecret(String text, String secret) {
+        return secret.isEmpty() ? text : text.replace(secret, "*****");
+    }
+
+    /**
+     * Parses the root object of the json weather data fetched from api.openweathermap.org.
      * This function is designed to be run asynchronously from spigot.
      *
      * @param json the weather data
      *
-     * @return the parsed weather state or CLEAR if the data couldn't be parsed
+     * @return the root json object, or an empty object if the data couldn't be parsed
      */
-    private static WeatherState parseOpenWeatherMapData(String json) {
+    private static JSONObject parseOpenWeatherMapJson(String json) {
         try {
             Object objRoot = new JSONParser().parse(json);
             if (objRoot instanceof JSONObject) {
-                JSONObject root = (JSONObject) objRoot;
-
-                Object objWeather = root.get("weather");
-                if (objWeather instanceof JSONArray) {
-                    JSONArray weather = (JSONArray) objWeather;
-                    if (!weather.isEmpty()) {
-                        Object objWeatherFirst = weather.get(0);
-                        if (objWeatherFirst instanceof JSONObject) {
-                            JSONObject weatherFirst = (JSONObject) objWeatherFirst;
-
-                            Object objWeatherMain = weatherFirst.get("main");
-                            if (objWeatherMain instanceof String) {
-                                String weatherMain = (String) objWeatherMain;
-                                return WeatherState.determineFrom(weatherMain);
-                            }
-                        }
+                return (JSONObject) objRoot;
+            }
+        }
+        catch (ParseException ignored) {
+        }
+        return new JSONObject();
+    }
+
+    /**
+     * Parses a weather state from the json weather data fetched from api.openweathermap.org.
+     * This function is designed to be run asynchronously from spigot.
+     *
+     * @param root the root object of the weather data
+     *
+     * @return the parsed weather state or null if the data couldn't be parsed
+     */
+    private static WeatherState parseOpenWeatherMapData(JSONObject root) {
+        Object objWeather = root.get("weather");
+        if (objWeather instanceof JSONArray) {
+            JSONArray weather = (JSONArray) objWeather;
+            if (!weather.isEmpty()) {
+                Object objWeatherFirst = weather.get(0);
+                if (objWeatherFirst instanceof JSONObject) {
+                    JSONObject weatherFirst = (JSONObject) objWeatherFirst;
+
+                    Object objWeatherMain = weatherFirst.get("main");
+                    if (objWeatherMain instanceof String) {
+                        String weatherMain = (String) objWeatherMain;
+                        return WeatherState.determineFrom(weatherMain);
                     }
                 }
             }
         }
-        catch (ParseException ignored) {
+        return null;
+    }
+
+    /**
+     * Parses a weather forecast from the json forecast data fetched from api.openweathermap.org.
+     * This function is designed to be run asynchronously from spigot.
+     *
+     * @param root the root object of the forecast data
+     *
+     * @return the parsed weather forecast, or null if the data couldn't be parsed
+     */
+    private static WeatherForecast parseOpenWeatherMapForecast(JSONObject root) {
+        Object objList = root.get("list");
+        if (objList instanceof JSONArray) {
+            JSONArray list = (JSONArray) objList;
+            List<Long> startMillis = new ArrayList<>();
+            List<WeatherState> states = new ArrayList<>();
+            for (Object objEntry : list) {
+                if (objEntry instanceof JSONObject) {
+                    JSONObject entry = (JSONObject) objEntry;
+
+                    Object objDt = entry.get("dt");
+                    WeatherState state = parseOpenWeatherMapData(entry);
+                    if (objDt instanceof Number && state != null) {
+                        startMillis.add(((Number) objDt).longValue() * 1000L);
+                        states.add(state);
+                    }
+                }
+            }
+            if (!startMillis.isEmpty()) {
+                return new WeatherForecast(startMillis.stream().mapToLong(Long::longValue).toArray(),
+                        states.toArray(new WeatherState[0]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses the city coordinates from the json weather or forecast data fetched from api.openweathermap.org.
+     * This function is designed to be run asynchronously from spigot.
+     *
+     * @param root the root object of the weather data
+     *
+     * @return the {latitude, longitude} of the city, or null if the data couldn't be parsed
+     */
+    private static double[] parseOpenWeatherMapCoords(JSONObject root) {
+        Object objCity = root.get("city");
+        if (objCity instanceof JSONObject) {
+            root = (JSONObject) objCity;
+        }
+        Object objCoord = root.get("coord");
+        if (objCoord instanceof JSONObject) {
+            JSONObject coord = (JSONObject) objCoord;
+
+            Object objLat = coord.get("lat");
+            Object objLon = coord.get("lon");
+            if (objLat instanceof Number && objLon instanceof Number) {
+                return new double[]{((Number) objLat).doubleValue(), ((Number) objLon).doubleValue()};
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes every entry of the sync trace, newest first, to a new file in the plugin's traces folder.
+     * Safe to call from any thread.
+     *
+     * @return the written file
+     * @throws IOException when the file could not be written
+     */
+    public static File dumpSyncTrace() throws IOException {
+        RealTimePlugin plugin = RealTimePlugin.getInstance();
+        File folder = new File(plugin.getDataFolder(), "traces");
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            throw new IOException("Could not create " + folder.getPath());
+        }
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+        File file = new File(folder, "trace-" + timestamp + ".log");
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (TraceEntry entry : plugin.syncTrace.read(null, 0, Integer.MAX_VALUE)) {
+                writer.write(entry.toString());
+                writer.newLine();
+            }
         }
-        return WeatherState.CLEAR;
+        return file;
     }
 }
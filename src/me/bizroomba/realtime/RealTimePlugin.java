@@ -1,26 +1,91 @@
 package me.bizroomba.realtime;
 
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.scheduler.BukkitTask;
 
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The main class of the RealTime SpigotMC plugin.
  */
 public class RealTimePlugin extends JavaPlugin implements Listener {
 
-    Map<String, WeatherState> realLifeWeather = new HashMap<>();
+    Map<String, WeatherState> realLifeWeather = new ConcurrentHashMap<>();
+    Map<String, WeatherForecast> realLifeForecasts = new ConcurrentHashMap<>();
+    Map<String, double[]> realLifeCoords = new ConcurrentHashMap<>();
+    final WeatherBoard weatherBoard = new WeatherBoard();
+    // the sequence of each city's shared weather record when it was last read, only used on the main thread
+    final Map<String, Long> sharedWeatherSequences = new HashMap<>();
+    Map<String, DayPhase> appliedPhases = new HashMap<>();
+    Map<String, WeatherState> appliedWeather = new HashMap<>();
+    volatile long moonPhaseKey = Long.MIN_VALUE;
+    volatile CompiledSettings compiledSettings = null;
+    WeatherScheduler weatherScheduler = new WeatherScheduler();
+    FetchQuota fetchQuota = null;
+    Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    CoalescedWarnings fetchWarnings = new CoalescedWarnings();
+    final SyncTrace syncTrace = new SyncTrace(4096);
+    SharedWeatherCache sharedWeatherCache = null;
+    Clock clock = Clock.systemDefaultZone();
+    SettingsStore settingsStore = new YamlSettingsStore(this);
+    private String openedSettingsStorage = "yaml";
+    private String openedSharedCacheDir = "";
+    private ConfigWatcher configWatcher = null;
+    volatile Gazetteer gazetteer = null;
+    private BukkitTask syncTask = null;
+    SyncPipeline syncPipeline = null;
+    final OverrideSchedule overrideSchedule = new OverrideSchedule();
+    volatile WeatherHistory weatherHistory = null;
+    private BukkitTask autosaveTask = null;
+    private int scheduledAutosavePeriod = 0;
+    private final List<BukkitTask> weatherTasks = new ArrayList<>();
+    private String scheduledApiKey = "";
+    private boolean scheduledForecast = false;
+    WeatherProvider weatherProvider = PluginUtils::requestOpenWeatherMapData;
+    WeatherProvider secondaryWeatherProvider = PluginUtils::requestWttrData;
+    final WeatherHedger weatherHedger = new WeatherHedger();
+    final HttpCache httpCache = new HttpCache();
+
+    /**
+     * Creates the plugin when spigot loads it.
+     */
+    public RealTimePlugin() {
+        super();
+    }
+
+    /**
+     * Creates the plugin outside of spigot's plugin loader, for the sync simulator.
+     */
+    RealTimePlugin(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     /**
      * Gets the instance of this plugin.
@@ -45,38 +110,310 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
         getLogger().info("Before time began...");
         getServer().getPluginManager().registerEvents(this, this);
         onRefresh();
+        getServer().getServicesManager().register(RealTimeService.class, new PluginService(this), this, ServicePriority.Normal);
     }
 
     /**
-     * Saves the config.
+     * Unregisters the plugin's service, stops watching the config and the sync workers,
+     * closes the shared weather cache and weather history and saves the config.
      */
     @Override
     public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        closeConfigWatcher();
+        if (syncPipeline != null) {
+            syncPipeline.close();
+            syncPipeline = null;
+        }
+        closeSharedWeatherCache();
+        closeWeatherHistory();
+        weatherHedger.close();
+        settingsStore.close();
         saveConfig();
     }
 
     /**
-     * Reloads the config, creating the default config if it doesn't exist,
-     * and reschedules the plugin's tasks.
+     * Reloads the config, creating the default config if it doesn't exist, and applies only what changed.
+     * Unchanged profiles, cached weather and tasks are kept, the caches of cities no longer used are dropped
+     * and newly used cities are fetched right away.
      */
     public void onRefresh() {
         saveDefaultConfig();
         reloadConfig();
 
-        realLifeWeather.clear();
-        getServer().getScheduler().cancelTasks(this);
+        String storage = getSettingsStorage();
+        if (!storage.equals(openedSettingsStorage)) {
+            settingsStore.close();
+            settingsStore = openSettingsStore();
+            openedSettingsStorage = storage;
+        }
+
+        CompiledSettings previousSettings = compiledSettings;
+        recompileSettings();
+        overrideSchedule.load(getScheduledOverrides(), LocalDateTime.now(clock));
+        if (previousSettings != null) {
+            for (String worldName : compiledSettings.getChangedWorlds(previousSettings)) {
+                appliedPhases.remove(worldName);
+                appliedWeather.remove(worldName);
+            }
+            List<String> cityNames = compiledSettings.getWeatherCities();
+            realLifeWeather.keySet().retainAll(cityNames);
+            realLifeForecasts.keySet().retainAll(cityNames);
+            realLifeCoords.keySet().retainAll(cityNames);
+            httpCache.retainCities(cityNames);
+            weatherBoard.retainCities(cityNames);
+            sharedWeatherSequences.keySet().retainAll(cityNames);
+        }
+
+        int autosavePeriod = isConfigAutosave() ? getConfigAutosavePeriod() : 0;
+        if (autosavePeriod != scheduledAutosavePeriod) {
+            if (autosaveTask != null) {
+                autosaveTask.cancel();
+                autosaveTask = null;
+            }
+            if (autosavePeriod > 0) {
+                autosaveTask = getServer().getScheduler().runTaskTimer(this, this::saveConfig, autosavePeriod, autosavePeriod);
+            }
+            scheduledAutosavePeriod = autosavePeriod;
+        }
+
+        String apiKey = getWeatherApiKey();
+        boolean forecast = isWeatherForecast();
+        if (!apiKey.equals(scheduledApiKey)) {
+            circuitBreakers.clear();
+        }
+        if (forecast != scheduledForecast) {
+            realLifeForecasts.clear();
+            weatherScheduler.clear();
+        }
+        if (fetchQuota == null || getWeatherApiPerMinute() != fetchQuota.getPerMinute() || getWeatherApiPerDay() != fetchQuota.getPerDay()) {
+            fetchQuota = new FetchQuota(getWeatherApiPerMinute(), getWeatherApiPerDay(), clock.millis());
+        }
+
+        String sharedCacheDir = getSharedWeatherCacheDir();
+        if (!sharedCacheDir.equals(openedSharedCacheDir)) {
+            closeSharedWeatherCache();
+            if (!sharedCacheDir.isEmpty()) {
+                try {
+                    sharedWeatherCache = new SharedWeatherCache(new File(sharedCacheDir));
+                }
+                catch (IOException e) {
+                    getLogger().warning("Could not open the shared weather cache, fetching the weather alone: " + e.getMessage());
+                }
+            }
+            openedSharedCacheDir = sharedCacheDir;
+        }
+
+        if (isWeatherHistory() && weatherHistory == null) {
+            weatherHistory = new WeatherHistory(new File(getDataFolder(), "weather-history"), getLogger());
+        }
+        else if (!isWeatherHistory()) {
+            closeWeatherHistory();
+        }
+        if (weatherHistory != null) {
+            // until a city is fetched, or if its api is unreachable, fall back to its recent recorded weather
+            for (String cityName : compiledSettings.getWeatherCities()) {
+                if (!realLifeWeather.containsKey(cityName)) {
+                    WeatherState recorded = weatherHistory.latestWeather(cityName, clock.millis() / 1000L);
+                    if (recorded != null) {
+                        realLifeWeather.put(cityName, recorded);
+                    }
+                }
+            }
+        }
+
+        if (weatherTasks.isEmpty() != apiKey.isEmpty() || forecast != scheduledForecast) {
+            for (BukkitTask task : weatherTasks) {
+                task.cancel();
+            }
+            weatherTasks.clear();
+            if (!apiKey.isEmpty()) {
+                weatherTasks.add(getServer().getScheduler().runTaskTimer(this, PluginUtils::scheduleRealLifeWeather, 0L, 20L));
+                weatherTasks.add(getServer().getScheduler().runTaskTimerAsynchronously(this, fetchWarnings::flush, 1200L, 1200L));
+                if (forecast) {
+                    weatherTasks.add(getServer().getScheduler().runTaskTimer(this, PluginUtils::advanceRealLifeForecasts, 20L, 20L));
+                }
+            }
+        }
+        scheduledApiKey = apiKey;
+        scheduledForecast = forecast;
+
+        int syncWorkers = getSyncWorkers();
+        if (syncPipeline != null && syncPipeline.getWorkers() != syncWorkers) {
+            syncPipeline.close();
+            syncPipeline = null;
+        }
+        if (syncPipeline == null && syncWorkers > 0) {
+            syncPipeline = new SyncPipeline(syncWorkers);
+        }
+        if (syncTask == null) {
+            syncTask = getServer().getScheduler().runTaskTimer(this, PluginUtils::syncWorldsToRealLife, 0L, 1L);
+        }
+
+        if (previousSettings != null && !apiKey.isEmpty()) {
+            for (String cityName : compiledSettings.getWeatherCities()) {
+                if (!previousSettings.getWeatherCities().contains(cityName)) {
+                    PluginUtils.fetchStaleWeather(cityName);
+                }
+            }
+        }
+
+        loadGazetteer();
+
+        if (isWatchConfig() && configWatcher == null) {
+            try {
+                configWatcher = new ConfigWatcher(new File(getDataFolder(), "config.yml").toPath(),
+                        () -> getServer().getScheduler().runTask(this, () -> {
+                            onRefresh();
+                            getLogger().info("Applied the changes made to config.yml");
+                        }));
+            }
+            catch (IOException e) {
+                getLogger().warning("Could not watch config.yml for changes: " + e.getMessage());
+            }
+        }
+        else if (!isWatchConfig() && configWatcher != null) {
+            closeConfigWatcher();
+        }
+        if (configWatcher != null) {
+            configWatcher.markCurrent();
+        }
+    }
+
+    /**
+     * Asynchronously opens the city gazetteer, first rebuilding its index if a city list
+     * in the data folder is newer, or the index was written by another version.
+     * Both openweathermap.org's city.list.json and a hand written cities.txt are indexed together.
+     * Without a city list or index, cities aren't validated.
+     */
+    private void loadGazetteer() {
+        File indexFile = new File(getDataFolder(), "cities.idx");
+        List<File> sourceFiles = new ArrayList<>();
+        for (String sourceName : new String[]{"city.list.json", "cities.txt"}) {
+            File sourceFile = new File(getDataFolder(), sourceName);
+            if (sourceFile.isFile()) {
+                sourceFiles.add(sourceFile);
+            }
+        }
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            Gazetteer loaded = null;
+            try {
+                boolean stale = !indexFile.isFile();
+                for (File sourceFile : sourceFiles) {
+                    stale |= indexFile.lastModified() < sourceFile.lastModified();
+                }
+                if (!sourceFiles.isEmpty() && stale) {
+                    Gazetteer.build(sourceFiles, indexFile);
+                }
+                if (indexFile.isFile()) {
+                    try {
+                        loaded = Gazetteer.open(indexFile);
+                    }
+                    catch (IOException e) {
+                        if (sourceFiles.isEmpty()) {
+                            throw e;
+                        }
+                        Gazetteer.build(sourceFiles, indexFile);
+                        loaded = Gazetteer.open(indexFile);
+                    }
+                }
+            }
+            catch (IOException e) {
+                getLogger().warning("Could not load the city gazetteer, cities won't be validated: " + e.getMessage());
+            }
+            Gazetteer opened = loaded;
+            getServer().getScheduler().runTask(this, () -> {
+                Gazetteer previous = gazetteer;
+                gazetteer = opened;
+                if (previous != null) {
+                    try {
+                        previous.close();
+                    }
+                    catch (IOException ignored) {
+                    }
+                }
+            });
+        });
+    }
+
+    /**
+     * Saves the config, without the config watcher mistaking the save for an edit.
+     */
+    @Override
+    public void saveConfig() {
+        super.saveConfig();
+        if (configWatcher != null) {
+            configWatcher.markCurrent();
+        }
+    }
 
-        if (isConfigAutosave()) {
-            int ticks = getConfigAutosavePeriod();
-            getServer().getScheduler().runTaskTimer(this, this::saveConfig, ticks, ticks);
+    private void closeConfigWatcher() {
+        if (configWatcher != null) {
+            try {
+                configWatcher.close();
+            }
+            catch (IOException e) {
+                getLogger().warning("Could not stop watching config.yml: " + e.getMessage());
+            }
+            configWatcher = null;
         }
+    }
 
-        if (!getWeatherApiKey().isEmpty()) {
-            int ticks = getWeatherFetchPeriod();
-            getServer().getScheduler().runTaskTimer(this, PluginUtils::fetchRealLifeWeather, 0L, ticks);
+    /**
+     * Opens the configured settings store, migrating the profiles and world assignments
+     * out of the config the first time the database is used. Falls back to the config on failure.
+     *
+     * @return the opened settings store
+     */
+    private SettingsStore openSettingsStore() {
+        YamlSettingsStore yamlStore = new YamlSettingsStore(this);
+        if (!getSettingsStorage().equals("sqlite")) {
+            return yamlStore;
+        }
+        SqliteSettingsStore sqliteStore;
+        try {
+            sqliteStore = SqliteSettingsStore.open(new File(getDataFolder(), "settings.db"), getLogger());
+        }
+        catch (SQLException e) {
+            getLogger().warning("Could not open the settings database, keeping the settings in the config: " + e.getMessage());
+            return yamlStore;
+        }
+        if (!sqliteStore.isMigrated()) {
+            try {
+                getConfig().save(new File(getDataFolder(), "config-before-sqlite.yml"));
+                sqliteStore.migrateFrom(yamlStore);
+            }
+            catch (IOException | SQLException e) {
+                getLogger().warning("Could not migrate the settings to the database, keeping them in the config: " + e.getMessage());
+                sqliteStore.close();
+                return yamlStore;
+            }
+            getConfig().set("settings", null);
+            getConfig().set("worlds", null);
+            saveConfig();
+            getLogger().info("Moved " + sqliteStore.getProfileNames().size() + " profiles and "
+                    + sqliteStore.getWorldNames().size() + " worlds from the config to settings.db");
         }
+        return sqliteStore;
+    }
 
-        getServer().getScheduler().runTaskTimer(this, PluginUtils::syncWorldsToRealLife, 0L, 1L);
+    private void closeSharedWeatherCache() {
+        if (sharedWeatherCache != null) {
+            try {
+                sharedWeatherCache.close();
+            }
+            catch (IOException e) {
+                getLogger().warning("Could not close the shared weather cache: " + e.getMessage());
+            }
+            sharedWeatherCache = null;
+        }
+    }
+
+    private void closeWeatherHistory() {
+        if (weatherHistory != null) {
+            weatherHistory.close();
+            weatherHistory = null;
+        }
     }
 
     /**
@@ -95,6 +432,69 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
         return PluginCmds.doTabComplete(sender, command, alias, args);
     }
 
+    /**
+     * Catches up a joining player's world if it is suspended and fetches its weather if it is stale.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        onPlayerEnterWorld(event.getPlayer().getWorld());
+    }
+
+    /**
+     * Catches up a player's new world if it is suspended and fetches its weather if it is stale.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        onPlayerEnterWorld(event.getPlayer().getWorld());
+    }
+
+    /**
+     * Catches up the world a player is about to teleport into if it is suspended
+     * and fetches its weather if it is stale.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        Location to = event.getTo();
+        if (to != null && to.getWorld() != null && !to.getWorld().equals(event.getPlayer().getWorld())) {
+            onPlayerEnterWorld(to.getWorld());
+        }
+    }
+
+    private void onPlayerEnterWorld(World world) {
+        if (isSuspendIdleWorlds()) {
+            PluginUtils.syncWorldToRealLife(world);
+        }
+        PluginUtils.fetchStaleWeatherFor(world);
+    }
+
+    /**
+     * Gets the compiled snapshot of the plugin's settings profiles and world assignments.
+     * This is safe to call from any thread.
+     *
+     * @return the most recently compiled settings
+     */
+    public CompiledSettings getCompiledSettings() {
+        return compiledSettings;
+    }
+
+    /**
+     * Compiles a new snapshot of the plugin's settings profiles and world assignments.
+     * This must be called whenever the settings in the config are changed.
+     */
+    public void recompileSettings() {
+        compiledSettings = CompiledSettings.compile(this, compiledSettings);
+    }
+
+    /**
+     * Compiles a new snapshot after the values of a single profile changed,
+     * compiling only that profile and the profiles inheriting from it again.
+     *
+     * @param profileName the changed profile
+     */
+    public void recompileSettings(String profileName) {
+        compiledSettings = CompiledSettings.compile(this, compiledSettings, profileName);
+    }
+
     /**
      * Gets the cached weather state for the chosen city.
      *
@@ -104,6 +504,75 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
         return realLifeWeather.getOrDefault(cityName, WeatherState.CLEAR);
     }
 
+    /**
+     * Gets the weather of a profile: its city's cached weather, or the recorded weather of
+     * the replayed date at the current time of day if the profile replays one.
+     * The replayed weather is looked up once a minute and cached in the compiled profile.
+     * This is safe to call from any thread.
+     *
+     * @param profile a compiled profile
+     * @param now     the current real life local datetime
+     *
+     * @return the profile's weather state, CLEAR if unknown
+     */
+    public WeatherState getProfileWeather(CompiledProfile profile, LocalDateTime now) {
+        if (profile.getWeatherReplay() == null) {
+            return getRealLifeWeather(profile.getWeatherCity());
+        }
+        WeatherHistory history = weatherHistory;
+        if (history == null || profile.getWeatherCity().isEmpty()) {
+            return WeatherState.CLEAR;
+        }
+        long replayed = profile.getWeatherReplay().atTime(now.toLocalTime()).atZone(clock.getZone()).toEpochSecond();
+        long minute = Math.floorDiv(replayed, 60L);
+        WeatherState weather = profile.getReplayedWeather(minute);
+        if (weather == null) {
+            weather = history.weatherAt(profile.getWeatherCity(), replayed);
+            if (weather == null) {
+                weather = WeatherState.CLEAR;
+            }
+            profile.setReplayedWeather(minute, weather);
+        }
+        return weather;
+    }
+
+    /**
+     * Gets the cached coordinates of the chosen city.
+     *
+     * @return the {latitude, longitude} of the city, or null if unknown
+     */
+    public double[] getRealLifeCoords(String cityName) {
+        return realLifeCoords.get(cityName);
+    }
+
+    /**
+     * Gets the minecraft moon phase matching the real moon, remembering the last date's phase.
+     *
+     * @param date the local date whose night the phase is for
+     *
+     * @return a minecraft moon phase from 0 (full) to 7
+     */
+    public int getMoonPhase(LocalDate date) {
+        // the date and phase are packed together so the cache can be read from any thread
+        long key = moonPhaseKey;
+        if (key == Long.MIN_VALUE || Math.floorDiv(key, 8L) != date.toEpochDay()) {
+            key = date.toEpochDay() * 8 + LunarPhase.compute(date, clock.getZone());
+            moonPhaseKey = key;
+        }
+        return (int) Math.floorMod(key, 8L);
+    }
+
+    /**
+     * Gets the circuit breaker guarding requests to a weather api endpoint.
+     *
+     * @param endpoint the api endpoint
+     *
+     * @return the endpoint's circuit breaker
+     */
+    public CircuitBreaker getCircuitBreaker(String endpoint) {
+        return circuitBreakers.computeIfAbsent(endpoint, k -> new CircuitBreaker());
+    }
+
     /**
      * Tests if the config should be autosaved.
      *
@@ -126,6 +595,61 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
         return 1200;
     }
 
+    /**
+     * Tests if worlds without players should be left unsynced until a player enters them.
+     *
+     * @return true if suspending idle worlds
+     */
+    public boolean isSuspendIdleWorlds() {
+        return getConfig().getBoolean("suspend-idle-worlds", false);
+    }
+
+    /**
+     * Gets the number of threads computing the worlds' sync targets off the main thread.
+     * With 0 the worlds are synced entirely on the main thread.
+     *
+     * @return an integer from 0 to the number of processors
+     */
+    public int getSyncWorkers() {
+        int workers = getConfig().getInt("sync-workers", 0);
+        return Math.max(0, Math.min(workers, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Tests if every city's weather should be recorded in the weather history,
+     * which allows replaying past weather and falling back to it when the api is unreachable.
+     *
+     * @return true if recording the weather
+     */
+    public boolean isWeatherHistory() {
+        return getConfig().getBoolean("weather-history", false);
+    }
+
+    /**
+     * Gets the scheduled overrides in the config, skipping and warning about invalid ones.
+     *
+     * @return the overrides in config order
+     */
+    public List<ScheduledOverride> getScheduledOverrides() {
+        List<ScheduledOverride> overrides = new ArrayList<>();
+        ConfigurationSection section = getConfig().getConfigurationSection("overrides");
+        if (section != null) {
+            for (String name : section.getKeys(false)) {
+                ConfigurationSection overrideSection = section.getConfigurationSection(name);
+                if (overrideSection == null) {
+                    continue;
+                }
+                try {
+                    overrides.add(ScheduledOverride.parse(overrideSection));
+                }
+                catch (IllegalArgumentException e) {
+                    getLogger().warning("Skipping the override " + name + ", it " + e.getMessage());
+                }
+            }
+        }
+        return overrides;
+    }
+
     /**
      * Gets the openweathermap.org API key used by the plugin.
      * If it is empty, the plugin will not use the weather sync feature.
@@ -141,8 +665,46 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
     }
 
     /**
-     * Gets the number of ticks between weather syncrhonizations.
-     * If this is too often you will max out your api key.
+     * Tests if edits to config.yml made outside of the server should be applied automatically,
+     * like a reload. Changes made with commands that weren't saved yet are lost, as with a reload.
+     *
+     * @return true if watching the config
+     */
+    public boolean isWatchConfig() {
+        return getConfig().getBoolean("watch-config", false);
+    }
+
+    /**
+     * Gets where the settings profiles and world assignments are kept.
+     * Large servers can keep them in an sqlite database instead of the config.
+     *
+     * @return "yaml" or "sqlite"
+     */
+    public String getSettingsStorage() {
+        String storage = getConfig().getString("settings-storage");
+        if (storage != null && storage.equalsIgnoreCase("sqlite")) {
+            return "sqlite";
+        }
+        return "yaml";
+    }
+
+    /**
+     * Gets the directory of the weather cache shared by the servers on this host.
+     * If it is empty, this server fetches its weather alone.
+     *
+     * @return a directory path or empty
+     */
+    public String getSharedWeatherCacheDir() {
+        String dir = getConfig().getString("shared-weather-cache");
+        if (dir != null) {
+            return dir;
+        }
+        return "";
+    }
+
+    /**
+     * Gets the number of ticks between weather syncrhonizations of cities with players in their worlds.
+     * Cities without players are fetched less often. If this is too often you will max out your api key.
      *
      * @return an integer no less than 1200
      */
@@ -154,18 +716,64 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
         return 1200;
     }
 
+    /**
+     * Tests if weather should only be fetched for cities with players in their worlds.
+     * Other cities keep their last fetched weather until a player enters one of their worlds.
+     *
+     * @return true if fetching weather on demand
+     */
+    public boolean isWeatherFetchOnDemand() {
+        return getConfig().getBoolean("fetch-weather-on-demand", false);
+    }
+
+    /**
+     * Gets the maximum number of weather requests per minute allowed by the api plan.
+     *
+     * @return a positive integer, or 0 if unlimited
+     */
+    public int getWeatherApiPerMinute() {
+        return Math.max(0, getConfig().getInt("weather-api-limits.per-minute", 60));
+    }
+
+    /**
+     * Gets the maximum number of weather requests per day allowed by the api plan.
+     *
+     * @return a positive integer, or 0 if unlimited
+     */
+    public int getWeatherApiPerDay() {
+        return Math.max(0, getConfig().getInt("weather-api-limits.per-day", 33000));
+    }
+
+    /**
+     * Tests if the weather should be fetched as a multi-day forecast
+     * and switched locally at the forecasted times, instead of being polled.
+     *
+     * @return true if fetching forecasts
+     */
+    public boolean isWeatherForecast() {
+        return getConfig().getBoolean("weather-forecast", false);
+    }
+
+    /**
+     * Gets the number of ticks between weather forecast fetches.
+     *
+     * @return an integer no less than 72000
+     */
+    public int getWeatherForecastPeriod() {
+        int ticks = getConfig().getInt("fetch-forecast-period", 216000);
+        if (ticks >= 72000) {
+            return ticks;
+        }
+        return 72000;
+    }
+
     /**
      * Gets a list of all the names of worlds being affected by this plugin.
      *
      * @return unmodifiable list of world names
      */
     public List<String> getAllAffectedWorldNames() {
-        List<String> affectedWorldNames = new ArrayList<>();
-        ConfigurationSection yamlWorlds = getConfig().getConfigurationSection("worlds");
-        if (yamlWorlds != null) {
-            affectedWorldNames.addAll(yamlWorlds.getKeys(false));
-        }
-        return Collections.unmodifiableList(affectedWorldNames);
+        return Collections.unmodifiableList(settingsStore.getWorldNames());
     }
 
     /**
@@ -191,11 +799,8 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
      */
     public List<SettingsProfile> getSettingsProfiles() {
         List<SettingsProfile> profiles = new ArrayList<>();
-        ConfigurationSection yamlSettings = getConfig().getConfigurationSection("settings");
-        if (yamlSettings != null) {
-            for (String profileName : yamlSettings.getKeys(false)) {
-                profiles.add(new SettingsProfile(profileName));
-            }
+        for (String profileName : settingsStore.getProfileNames()) {
+            profiles.add(new SettingsProfile(profileName));
         }
         return Collections.unmodifiableList(profiles);
     }
@@ -206,12 +811,7 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
      * @return unmodifiable list of settings profile names
      */
     public List<String> getSettingsProfileNames() {
-        List<String> profileNames = new ArrayList<>();
-        ConfigurationSection yamlSettings = getConfig().getConfigurationSection("settings");
-        if (yamlSettings != null) {
-            profileNames.addAll(yamlSettings.getKeys(false));
-        }
-        return Collections.unmodifiableList(profileNames);
+        return Collections.unmodifiableList(settingsStore.getProfileNames());
     }
 
     /**
@@ -233,7 +833,7 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
      * @return a plugin settings profile name or an empty string
      */
     public String getSettingsProfileNameFor(String worldName) {
-        String profileName = getConfig().getString("worlds." + worldName);
+        String profileName = settingsStore.getProfileNameFor(worldName);
         if (profileName != null) {
             return profileName;
         }
@@ -261,12 +861,8 @@ public class RealTimePlugin extends JavaPlugin implements Listener {
      */
     public void setSettingsProfileFor(String worldName, String profileName) {
         if (!worldName.isEmpty()) {
-            if (profileName.isEmpty()) {
-                getConfig().set("worlds." + worldName, null);
-            }
-            else {
-                getConfig().set("worlds." + worldName, profileName);
-            }
+            settingsStore.setProfileFor(worldName, profileName.isEmpty() ? null : profileName);
+            recompileSettings();
         }
     }
 }
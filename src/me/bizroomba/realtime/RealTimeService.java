@@ -0,0 +1,46 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.World;
+
+import java.time.Instant;
+
+/**
+ * A service for other plugins to query the gametime and weather the plugin synchronizes worlds to.
+ * It is registered with the server's services manager while the plugin is enabled.
+ * All methods read only the plugin's compiled in-memory settings and are safe to call from any thread.
+ */
+public interface RealTimeService {
+
+    /**
+     * Computes the full gametime worlds with the given profile would be synced to at an instant.
+     *
+     * @param profileName the name of a settings profile
+     * @param instant     the real life instant
+     *
+     * @return the full gametime
+     * @throws IllegalArgumentException when the profile isn't defined
+     */
+    long gameTimeAt(String profileName, Instant instant) throws IllegalArgumentException;
+
+    /**
+     * Computes the full gametimes worlds with the given profile would be synced to at many instants.
+     * This is cheaper than querying the instants one by one.
+     *
+     * @param profileName the name of a settings profile
+     * @param instants    the real life instants
+     *
+     * @return the full gametimes, in the same order as the instants
+     * @throws IllegalArgumentException when the profile isn't defined
+     */
+    long[] gameTimesAt(String profileName, Instant... instants) throws IllegalArgumentException;
+
+    /**
+     * Gets the weather state the world is currently synced to, which is the active scheduled
+     * override's weather if it forces one, and the real life weather otherwise.
+     *
+     * @param world a loaded world
+     *
+     * @return the weather state, or null if the world's weather isn't synced or overridden
+     */
+    WeatherState currentWeather(World world);
+}
@@ -0,0 +1,92 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.World;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.world.WorldEvent;
+
+/**
+ * Called when the plugin's synchronization changes the day phase or weather state of a world.
+ * It is not called for syncs that leave both unchanged.
+ */
+public class RealTimeSyncEvent extends WorldEvent {
+
+    private static final HandlerList handlers = new HandlerList();
+
+    private final String profileName;
+    private final DayPhase previousPhase;
+    private final DayPhase phase;
+    private final WeatherState previousWeather;
+    private final WeatherState weather;
+
+    RealTimeSyncEvent(World world, String profileName, DayPhase previousPhase, DayPhase phase, WeatherState previousWeather, WeatherState weather) {
+        super(world);
+        this.profileName = profileName;
+        this.previousPhase = previousPhase;
+        this.phase = phase;
+        this.previousWeather = previousWeather;
+        this.weather = weather;
+    }
+
+    /**
+     * Tests if any listeners are registered, so the event doesn't need to be created otherwise.
+     *
+     * @return true if the event has listeners
+     */
+    public static boolean hasListeners() {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+
+    /**
+     * Gets the name of the settings profile applied to the world.
+     *
+     * @return a settings profile name
+     */
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * Gets the day phase of the world before this sync.
+     *
+     * @return the previous day phase, or null if the time wasn't synced before
+     */
+    public DayPhase getPreviousPhase() {
+        return previousPhase;
+    }
+
+    /**
+     * Gets the day phase of the world after this sync.
+     *
+     * @return the day phase, or null if the time was never synced
+     */
+    public DayPhase getPhase() {
+        return phase;
+    }
+
+    /**
+     * Gets the weather state of the world before this sync.
+     *
+     * @return the previous weather state, or null if the weather wasn't synced before
+     */
+    public WeatherState getPreviousWeather() {
+        return previousWeather;
+    }
+
+    /**
+     * Gets the weather state of the world after this sync.
+     *
+     * @return the weather state, or null if the weather was never synced
+     */
+    public WeatherState getWeather() {
+        return weather;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
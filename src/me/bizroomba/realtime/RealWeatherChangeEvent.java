@@ -0,0 +1,67 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Called when a newly fetched real life weather state of a city differs from the cached one.
+ */
+public class RealWeatherChangeEvent extends Event {
+
+    private static final HandlerList handlers = new HandlerList();
+
+    private final String cityName;
+    private final WeatherState previousWeather;
+    private final WeatherState weather;
+
+    RealWeatherChangeEvent(String cityName, WeatherState previousWeather, WeatherState weather) {
+        this.cityName = cityName;
+        this.previousWeather = previousWeather;
+        this.weather = weather;
+    }
+
+    /**
+     * Tests if any listeners are registered, so the event doesn't need to be created otherwise.
+     *
+     * @return true if the event has listeners
+     */
+    public static boolean hasListeners() {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+
+    /**
+     * Gets the real life city whose weather changed.
+     *
+     * @return a string of the format: &lt;city&gt;[, &lt;country&gt;]
+     */
+    public String getCityName() {
+        return cityName;
+    }
+
+    /**
+     * Gets the previously cached weather state of the city.
+     *
+     * @return the previous weather state, or null if it wasn't fetched before
+     */
+    public WeatherState getPreviousWeather() {
+        return previousWeather;
+    }
+
+    /**
+     * Gets the newly fetched weather state of the city.
+     *
+     * @return the weather state
+     */
+    public WeatherState getWeather() {
+        return weather;
+    }
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
@@ -0,0 +1,217 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A recurring real life window during which a profile or world is forced to a fixed time of day
+ * and/or weather, for example "midnight and thunder from 20:00 to 22:00 on saturdays".
+ * A window whose end is not after its start runs past midnight. Immutable.
+ */
+public final class ScheduledOverride {
+
+    private final String name;
+    private final boolean world;
+    private final String target;
+    private final Set<DayOfWeek> days;
+    private final LocalTime from;
+    private final LocalTime to;
+    private final long time;
+    private final WeatherState weather;
+
+    ScheduledOverride(String name, boolean world, String target, Set<DayOfWeek> days, LocalTime from, LocalTime to, long time, WeatherState weather) {
+        this.name = Objects.requireNonNull(name);
+        this.world = world;
+        this.target = Objects.requireNonNull(target);
+        this.days = Collections.unmodifiableSet(days.isEmpty() ? EnumSet.allOf(DayOfWeek.class) : EnumSet.copyOf(days));
+        this.from = Objects.requireNonNull(from);
+        this.to = Objects.requireNonNull(to);
+        this.time = time;
+        this.weather = weather;
+    }
+
+    /**
+     * Reads an override from its config section.
+     *
+     * @param section the override's section, named after the override
+     *
+     * @return the override
+     * @throws IllegalArgumentException when the section is not a valid override
+     */
+    public static ScheduledOverride parse(ConfigurationSection section) throws IllegalArgumentException {
+        String profileName = section.getString("profile");
+        String worldName = section.getString("world");
+        if ((profileName == null) == (worldName == null)) {
+            throw new IllegalArgumentException("needs either a profile or a world");
+        }
+
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String day : section.getStringList("days")) {
+            try {
+                days.add(DayOfWeek.valueOf(day.trim().toUpperCase(Locale.ROOT)));
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("\"" + day + "\" is not a day of the week");
+            }
+        }
+
+        LocalTime from;
+        LocalTime to;
+        try {
+            from = LocalTime.parse(section.getString("from", ""));
+            to = LocalTime.parse(section.getString("to", ""));
+        }
+        catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("needs a from and to time like \"20:00\"");
+        }
+
+        long time = section.isSet("time") ? section.getLong("time") : -1;
+        if (section.isSet("time") && (time < 0 || time >= 24000)) {
+            throw new IllegalArgumentException("time should be from 0 to 23999 ticks");
+        }
+        WeatherState weather = null;
+        if (section.isSet("weather")) {
+            try {
+                weather = WeatherState.valueOf(section.getString("weather", "").toUpperCase(Locale.ROOT));
+            }
+            catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("weather should be clear, rain or thunder");
+            }
+        }
+        if (time < 0 && weather == null) {
+            throw new IllegalArgumentException("needs a time or weather to force");
+        }
+
+        return new ScheduledOverride(section.getName(), worldName != null,
+                worldName != null ? worldName : profileName, days, from, to, time, weather);
+    }
+
+    /**
+     * Gets the name of the override.
+     *
+     * @return the override's config name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Tests if the override targets a single world instead of a profile.
+     *
+     * @return true if targeting a world
+     */
+    public boolean isWorldTarget() {
+        return world;
+    }
+
+    /**
+     * Gets the name of the profile or world the override targets.
+     *
+     * @return a profile or world name
+     */
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Gets the length of each window.
+     *
+     * @return a duration of more than zero and at most a day
+     */
+    public Duration getDuration() {
+        Duration duration = Duration.between(from, to);
+        return duration.isNegative() || duration.isZero() ? duration.plusDays(1) : duration;
+    }
+
+    /**
+     * Gets the first window start after a moment.
+     *
+     * @param after a real life local datetime
+     *
+     * @return the start of the next window
+     */
+    public LocalDateTime nextStart(LocalDateTime after) {
+        for (LocalDate date = after.toLocalDate(); ; date = date.plusDays(1)) {
+            LocalDateTime start = date.atTime(from);
+            if (start.isAfter(after) && days.contains(date.getDayOfWeek())) {
+                return start;
+            }
+        }
+    }
+
+    /**
+     * Gets the start of the window a moment is in.
+     *
+     * @param now a real life local datetime
+     *
+     * @return the start of the current window, or null if outside of every window
+     */
+    public LocalDateTime currentStart(LocalDateTime now) {
+        LocalDateTime start = nextStart(now.minus(getDuration()));
+        return start.isAfter(now) ? null : start;
+    }
+
+    /**
+     * Gets the forced time of day.
+     *
+     * @return ticks from 0 to 23999, or -1 if the time isn't forced
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the forced weather.
+     *
+     * @return the weather state, or null if the weather isn't forced
+     */
+    public WeatherState getWeather() {
+        return weather;
+    }
+
+    /**
+     * Moves a gametime to the forced time of day, keeping its day so the moon phase doesn't change.
+     *
+     * @param gametime a gametime
+     *
+     * @return the forced gametime
+     */
+    public long applyTime(long gametime) {
+        return Math.floorDiv(gametime, 24000L) * 24000L + time;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof ScheduledOverride)) {
+            return false;
+        }
+        ScheduledOverride other = (ScheduledOverride) obj;
+        return name.equals(other.name)
+                && world == other.world
+                && target.equals(other.target)
+                && days.equals(other.days)
+                && from.equals(other.from)
+                && to.equals(other.to)
+                && time == other.time
+                && weather == other.weather;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, world, target, days, from, to, time, weather);
+    }
+}
@@ -1,13 +1,13 @@
 package me.bizroomba.realtime;
 
 import org.bukkit.World;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.FileConfiguration;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -17,14 +17,95 @@ import java.util.Objects;
  */
 public class SettingsProfile {
 
+    /**
+     * The keys of every setting a profile can have.
+     */
+    static final List<String> KEYS = Collections.unmodifiableList(Arrays.asList(
+            "sync-time", "time-zero", "offset", "speed", "sync-weather", "weather-city",
+            "solar-time", "sync-moon", "latitude", "longitude", "weather-replay",
+            "hedge-weather", "speed-curve", "parent"));
+
     private final String name;
 
     SettingsProfile(String profileName) {
         name = Objects.requireNonNull(profileName);
     }
 
-    private static FileConfiguration getConfig() {
-        return RealTimePlugin.getInstance().getConfig();
+    private static SettingsStore getStore() {
+        return RealTimePlugin.getInstance().settingsStore;
+    }
+
+    private void setValue(String key, Object value) {
+        getStore().setValue(name, key, value);
+        RealTimePlugin.getInstance().recompileSettings(name);
+    }
+
+    /**
+     * Gets the profiles this profile inherits its values from, starting with itself and then
+     * following the parents. A parent that was already in the chain ends it, so cycles are cut.
+     *
+     * @return the profile names, nearest first, or empty if this is an empty profile
+     */
+    public List<String> getLineage() {
+        List<String> lineage = new ArrayList<>();
+        String current = name;
+        while (current != null && !current.isEmpty() && !lineage.contains(current)) {
+            lineage.add(current);
+            current = getStore().getString(current, "parent");
+        }
+        return lineage;
+    }
+
+    /**
+     * Tests if following the parents of this profile leads back to a profile already in the chain.
+     *
+     * @return true if the parents make a cycle
+     */
+    public boolean hasParentCycle() {
+        List<String> lineage = getLineage();
+        if (lineage.isEmpty()) {
+            return false;
+        }
+        String last = getStore().getString(lineage.get(lineage.size() - 1), "parent");
+        return last != null && lineage.contains(last);
+    }
+
+    /**
+     * Gets the nearest profile in the lineage that has a value for the key.
+     */
+    private String getOwner(String key) {
+        for (String profileName : getLineage()) {
+            if (getStore().getString(profileName, key) != null) {
+                return profileName;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Gets the profile whose values this profile inherits where it has none of its own.
+     * Parents can have parents of their own.
+     *
+     * @return the parent profile's name, or empty if this profile has no parent
+     */
+    public String getParent() {
+        String parentName = getStore().getString(name, "parent");
+        if (parentName != null) {
+            return parentName;
+        }
+        return "";
+    }
+
+    /**
+     * Sets the profile whose values this profile inherits where it has none of its own.
+     * This is ignored if it would make the parents a cycle.
+     *
+     * @param parentName the parent profile's name, or empty for no parent
+     */
+    public void setParent(String parentName) {
+        if (name.isEmpty()) return;
+        if (parentName != null && !parentName.isEmpty() && new SettingsProfile(parentName).getLineage().contains(name)) return;
+        setValue("parent", parentName == null || parentName.isEmpty() ? null : parentName);
     }
 
     /**
@@ -42,17 +123,7 @@ public class SettingsProfile {
      * @return unmodifiable list of world names
      */
     public List<String> getAffectedWorldNames() {
-        List<String> profileWorldNames = new ArrayList<>();
-        ConfigurationSection yamlWorlds = getConfig().getConfigurationSection("worlds");
-        if (yamlWorlds != null) {
-            for (String worldName : yamlWorlds.getKeys(false)) {
-                String profileName = RealTimePlugin.getInstance().getSettingsProfileNameFor(worldName);
-                if (profileName.equals(name)) {
-                    profileWorldNames.add(worldName);
-                }
-            }
-        }
-        return Collections.unmodifiableList(profileWorldNames);
+        return Collections.unmodifiableList(getStore().getWorldNamesFor(name));
     }
 
     /**
@@ -77,7 +148,7 @@ public class SettingsProfile {
      * @return true if syncing time, else false
      */
     public boolean isSyncTime() {
-        return getConfig().getBoolean("settings." + name + ".sync-time", false);
+        return getStore().getBoolean(getOwner("sync-time"), "sync-time", false);
     }
 
     /**
@@ -87,7 +158,7 @@ public class SettingsProfile {
      */
     public void setSyncTime(boolean sync) {
         if (name.isEmpty()) return;
-        getConfig().set("settings." + name + ".sync-time", sync);
+        setValue("sync-time", sync);
     }
 
     /**
@@ -99,7 +170,7 @@ public class SettingsProfile {
      */
     public LocalDateTime getTimeZero() {
         try {
-            String isoTimeZero = getConfig().getString("settings." + name + ".time-zero");
+            String isoTimeZero = getStore().getString(getOwner("time-zero"), "time-zero");
             if (isoTimeZero != null) {
                 return LocalDateTime.parse(isoTimeZero, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
             }
@@ -118,11 +189,11 @@ public class SettingsProfile {
      */
     public void setTimeZero(LocalDateTime timeZero) {
         if (name.isEmpty()) return;
-        String isoTimeZero = null;
+        String isoTimeZero = "";
         if (timeZero != null && !LocalDateTime.now().isBefore(timeZero)) {
             isoTimeZero = timeZero.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
         }
-        getConfig().set("settings." + name + ".time-zero", isoTimeZero);
+        setValue("time-zero", isoTimeZero);
     }
 
     /**
@@ -132,7 +203,7 @@ public class SettingsProfile {
      * @return minecraft ticks ahead (can be negative)
      */
     public long getTimeOffset() {
-        return getConfig().getLong("settings." + name + ".offset", 0L);
+        return getStore().getLong(getOwner("offset"), "offset", 0L);
     }
 
     /**
@@ -143,7 +214,7 @@ public class SettingsProfile {
      */
     public void setTimeOffset(long ticks) {
         if (name.isEmpty()) return;
-        getConfig().set("settings." + name + ".offset", ticks);
+        setValue("offset", ticks);
     }
 
     /**
@@ -152,7 +223,7 @@ public class SettingsProfile {
      * @return a multiplier (can be negative; cannot be zero)
      */
     public double getTimeSpeed() {
-        double multiplier = getConfig().getDouble("settings." + name + ".speed", 1.0);
+        double multiplier = getStore().getDouble(getOwner("speed"), "speed", 1.0);
         if (multiplier != 0) {
             return multiplier;
         }
@@ -167,8 +238,37 @@ public class SettingsProfile {
     public void setTimeSpeed(double multiplier) {
         if (name.isEmpty()) return;
         if (multiplier != 0) {
-            getConfig().set("settings." + name + ".speed", multiplier);
+            setValue("speed", multiplier);
+        }
+    }
+
+    /**
+     * Gets the speed curve that varies the speed of gametime over the real life week,
+     * on top of the speed multiplier. It is not used with solar time.
+     *
+     * @return the speed curve, or null if gametime runs at a constant speed
+     */
+    public SpeedCurve getSpeedCurve() {
+        String curve = getStore().getString(getOwner("speed-curve"), "speed-curve");
+        if (curve != null && !curve.trim().isEmpty()) {
+            try {
+                return SpeedCurve.parse(curve);
+            }
+            catch (IllegalArgumentException ignored) {
+            }
         }
+        return null;
+    }
+
+    /**
+     * Sets the speed curve that varies the speed of gametime over the real life week,
+     * on top of the speed multiplier. It is not used with solar time.
+     *
+     * @param curve the speed curve, or null for a constant speed
+     */
+    public void setSpeedCurve(SpeedCurve curve) {
+        if (name.isEmpty()) return;
+        setValue("speed-curve", curve != null ? curve.toString() : "");
     }
 
     /**
@@ -177,7 +277,7 @@ public class SettingsProfile {
      * @return true if syncing weather, else false
      */
     public boolean isSyncWeather() {
-        return getConfig().getBoolean("settings." + name + ".sync-weather", false);
+        return getStore().getBoolean(getOwner("sync-weather"), "sync-weather", false);
     }
 
     /**
@@ -187,7 +287,7 @@ public class SettingsProfile {
      */
     public void setSyncWeather(boolean sync) {
         if (name.isEmpty()) return;
-        getConfig().set("settings." + name + ".sync-weather", sync);
+        setValue("sync-weather", sync);
     }
 
     /**
@@ -197,7 +297,7 @@ public class SettingsProfile {
      * @return a string of the format: &lt;city&gt;[, &lt;country&gt;]
      */
     public String getWeatherCity() {
-        String cityName = getConfig().getString("settings." + name + ".weather-city");
+        String cityName = getStore().getString(getOwner("weather-city"), "weather-city");
         if (cityName != null) {
             return cityName;
         }
@@ -212,11 +312,145 @@ public class SettingsProfile {
      */
     public void setWeatherCity(String cityName) {
         if (name.isEmpty()) return;
-        getConfig().set("settings." + name + ".weather-city", cityName);
+        setValue("weather-city", cityName);
+    }
+
+    /**
+     * Gets the past date whose recorded weather is replayed instead of fetching the city's current weather.
+     * The weather at the current time of day on that date is used, so the date's weather repeats every day.
+     *
+     * @return the replayed date, or null if not replaying
+     */
+    public LocalDate getWeatherReplay() {
+        try {
+            String isoDate = getStore().getString(getOwner("weather-replay"), "weather-replay");
+            if (isoDate != null && !isoDate.isEmpty()) {
+                return LocalDate.parse(isoDate, DateTimeFormatter.ISO_LOCAL_DATE);
+            }
+        }
+        catch (DateTimeParseException ignored) {
+        }
+        return null;
+    }
+
+    /**
+     * Sets the past date whose recorded weather is replayed instead of fetching the city's current weather.
+     *
+     * @param date the replayed date, or null to stop replaying
+     */
+    public void setWeatherReplay(LocalDate date) {
+        if (name.isEmpty()) return;
+        setValue("weather-replay", date != null ? date.format(DateTimeFormatter.ISO_LOCAL_DATE) : "");
+    }
+
+    /**
+     * Tests if the weather of this profile's city is also requested from wttr.in
+     * when openweathermap.org is slower than usual or fails.
+     *
+     * @return true if hedging weather requests, else false
+     */
+    public boolean isHedgeWeather() {
+        return getStore().getBoolean(getOwner("hedge-weather"), "hedge-weather", false);
+    }
+
+    /**
+     * Sets if the weather of this profile's city is also requested from wttr.in
+     * when openweathermap.org is slower than usual or fails.
+     *
+     * @param hedge true if hedging weather requests, else false
+     */
+    public void setHedgeWeather(boolean hedge) {
+        if (name.isEmpty()) return;
+        setValue("hedge-weather", hedge);
+    }
+
+    /**
+     * Tests if worlds with this profile have their time warped so that
+     * the minecraft sunrise and sunset match the real sun.
+     *
+     * @return true if using solar time, else false
+     */
+    public boolean isSolarTime() {
+        return getStore().getBoolean(getOwner("solar-time"), "solar-time", false);
+    }
+
+    /**
+     * Sets if worlds with this profile have their time warped so that
+     * the minecraft sunrise and sunset match the real sun.
+     *
+     * @param solar true if using solar time, else false
+     */
+    public void setSolarTime(boolean solar) {
+        if (name.isEmpty()) return;
+        setValue("solar-time", solar);
+    }
+
+    /**
+     * Tests if worlds with this profile have their moon phase synchronized with the real moon.
+     * With a speed or offset, the moon follows the game's calendar rather than today's date.
+     *
+     * @return true if syncing the moon, else false
+     */
+    public boolean isSyncMoon() {
+        return getStore().getBoolean(getOwner("sync-moon"), "sync-moon", false);
+    }
+
+    /**
+     * Sets if worlds with this profile have their moon phase synchronized with the real moon.
+     * With a speed or offset, the moon follows the game's calendar rather than today's date.
+     *
+     * @param sync true if syncing the moon, else false
+     */
+    public void setSyncMoon(boolean sync) {
+        if (name.isEmpty()) return;
+        setValue("sync-moon", sync);
+    }
+
+    /**
+     * Gets the latitude used for solar time.
+     * If this is not set, the coordinates of the weather city are used.
+     *
+     * @return degrees north of the equator, or NaN if not set
+     */
+    public double getLatitude() {
+        return getStore().getDouble(getOwner("latitude"), "latitude", Double.NaN);
+    }
+
+    /**
+     * Sets the latitude used for solar time.
+     * If this is NaN, the coordinates of the weather city are used.
+     *
+     * @param latitude degrees north of the equator, or NaN
+     */
+    public void setLatitude(double latitude) {
+        if (name.isEmpty()) return;
+        setValue("latitude", Double.isNaN(latitude) ? "" : latitude);
+    }
+
+    /**
+     * Gets the longitude used for solar time.
+     * If this is not set, the coordinates of the weather city are used.
+     *
+     * @return degrees east of the prime meridian, or NaN if not set
+     */
+    public double getLongitude() {
+        return getStore().getDouble(getOwner("longitude"), "longitude", Double.NaN);
+    }
+
+    /**
+     * Sets the longitude used for solar time.
+     * If this is NaN, the coordinates of the weather city are used.
+     *
+     * @param longitude degrees east of the prime meridian, or NaN
+     */
+    public void setLongitude(double longitude) {
+        if (name.isEmpty()) return;
+        setValue("longitude", Double.isNaN(longitude) ? "" : longitude);
     }
 
     /**
-     * Copy the settings of this profile to another profile.
+     * Copy the settings of this profile to another profile. The values inherited
+     * from the parents are copied too, so the copy doesn't need the parents.
      *
      * @param targetProfileName the profile whose settings will be overwritten
      */
@@ -227,8 +461,15 @@ public class SettingsProfile {
             target.setTimeZero(getTimeZero());
             target.setTimeOffset(getTimeOffset());
             target.setTimeSpeed(getTimeSpeed());
+            target.setSpeedCurve(getSpeedCurve());
             target.setSyncWeather(isSyncWeather());
             target.setWeatherCity(getWeatherCity());
+            target.setWeatherReplay(getWeatherReplay());
+            target.setHedgeWeather(isHedgeWeather());
+            target.setSolarTime(isSolarTime());
+            target.setSyncMoon(isSyncMoon());
+            target.setLatitude(getLatitude());
+            target.setLongitude(getLongitude());
         }
     }
 
@@ -237,6 +478,7 @@ public class SettingsProfile {
      * Any values used by synced worlds will be defaults.
      */
     public void clear() {
-        getConfig().set("settings." + name, null);
+        getStore().clearProfile(name);
+        RealTimePlugin.getInstance().recompileSettings(name);
     }
 }
@@ -0,0 +1,114 @@
+package me.bizroomba.realtime;
+
+import java.util.List;
+
+/**
+ * Where the settings profiles and world assignments are kept.
+ * Only used from the main thread.
+ */
+public interface SettingsStore {
+
+    /**
+     * Gets a boolean value of a settings profile.
+     *
+     * @param profileName the profile name
+     * @param key         the setting's key
+     * @param def         the value if the setting is missing
+     *
+     * @return the setting's value or the default
+     */
+    boolean getBoolean(String profileName, String key, boolean def);
+
+    /**
+     * Gets a whole number value of a settings profile.
+     *
+     * @param profileName the profile name
+     * @param key         the setting's key
+     * @param def         the value if the setting is missing
+     *
+     * @return the setting's value or the default
+     */
+    long getLong(String profileName, String key, long def);
+
+    /**
+     * Gets a decimal value of a settings profile.
+     *
+     * @param profileName the profile name
+     * @param key         the setting's key
+     * @param def         the value if the setting is missing
+     *
+     * @return the setting's value or the default
+     */
+    double getDouble(String profileName, String key, double def);
+
+    /**
+     * Gets a string value of a settings profile.
+     *
+     * @param profileName the profile name
+     * @param key         the setting's key
+     *
+     * @return the setting's value or null if missing
+     */
+    String getString(String profileName, String key);
+
+    /**
+     * Sets a value of a settings profile, creating the profile if needed.
+     *
+     * @param profileName the profile name
+     * @param key         the setting's key
+     * @param value       a boolean, number or string, or null to remove the setting
+     */
+    void setValue(String profileName, String key, Object value);
+
+    /**
+     * Deletes a settings profile and all its values.
+     *
+     * @param profileName the profile name
+     */
+    void clearProfile(String profileName);
+
+    /**
+     * Gets the names of the defined settings profiles.
+     *
+     * @return list of profile names
+     */
+    List<String> getProfileNames();
+
+    /**
+     * Gets the name of the settings profile assigned to a world.
+     *
+     * @param worldName the world name
+     *
+     * @return the profile name or null if the world has none
+     */
+    String getProfileNameFor(String worldName);
+
+    /**
+     * Assigns a settings profile to a world.
+     *
+     * @param worldName   the world name
+     * @param profileName the profile name, or null to unassign the world
+     */
+    void setProfileFor(String worldName, String profileName);
+
+    /**
+     * Gets the names of the worlds that have a settings profile.
+     *
+     * @return list of world names
+     */
+    List<String> getWorldNames();
+
+    /**
+     * Gets the names of the worlds a settings profile is assigned to.
+     *
+     * @param profileName the profile name
+     *
+     * @return list of world names
+     */
+    List<String> getWorldNamesFor(String profileName);
+
+    /**
+     * Finishes any pending writes and releases the store.
+     */
+    void close();
+}
@@ -0,0 +1,301 @@
+package me.bizroomba.realtime;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A weather cache shared by every server on the host through a memory-mapped file.
+ * The server holding the cache's file lock is the leader: it fetches the weather and writes it
+ * into fixed-size city records, while the other servers read the records straight from the mapping.
+ * Each record is guarded by a sequence number that is odd while it is being written,
+ * so readers retry instead of seeing a half written record.
+ * Leadership passes to another server when the leader closes the cache or its process dies.
+ * This is only used from the main thread.
+ */
+public final class SharedWeatherCache implements Closeable {
+
+    private static final int MAGIC = 0x52545743;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CAPACITY = 1024;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 128;
+    private static final int MAX_NAME_BYTES = RECORD_SIZE - 38;
+    private static final int MAX_READ_TRIES = 16;
+
+    private static final int SEQUENCE = 0;
+    private static final int UPDATED_MILLIS = 8;
+    private static final int LATITUDE = 16;
+    private static final int LONGITUDE = 24;
+    private static final int NAME_HASH = 32;
+    private static final int WEATHER = 36;
+    private static final int NAME_LENGTH = 37;
+    private static final int NAME = 38;
+
+    // java 8 has no explicit memory fences, an atomic read-modify-write acts as a full fence
+    private static final AtomicInteger FENCE = new AtomicInteger();
+
+    private final RandomAccessFile dataFile;
+    private final RandomAccessFile lockFile;
+    private final MappedByteBuffer buffer;
+    private FileLock lock = null;
+
+    /**
+     * Opens or creates the shared weather cache in a directory.
+     *
+     * @param directory the directory shared by the servers
+     *
+     * @throws IOException when the cache could not be opened or was written by an incompatible version
+     */
+    public SharedWeatherCache(File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory.getPath());
+        }
+        lockFile = new RandomAccessFile(new File(directory, "weather-cache.lock"), "rw");
+        dataFile = new RandomAccessFile(new File(directory, "weather-cache.dat"), "rw");
+        try {
+            long size = HEADER_SIZE + (long) CAPACITY * RECORD_SIZE;
+            // the lock on the first byte keeps two servers from initializing the file at once
+            FileLock initLock = lockFile.getChannel().lock(0, 1, false);
+            try {
+                buffer = dataFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (buffer.getInt(0) == 0) {
+                    buffer.putInt(4, FORMAT_VERSION);
+                    buffer.putInt(8, CAPACITY);
+                    buffer.putInt(0, MAGIC);
+                }
+                else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || buffer.getInt(8) != CAPACITY) {
+                    throw new IOException("The shared weather cache was written by an incompatible version");
+                }
+            }
+            finally {
+                initLock.release();
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            dataFile.close();
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tries to become the leader, or stays the leader if this cache already is.
+     *
+     * @return true if this server should fetch the weather
+     */
+    public boolean tryLead() {
+        if (lock != null && lock.isValid()) {
+            return true;
+        }
+        try {
+            lock = lockFile.getChannel().tryLock(1, 1, false);
+        }
+        catch (OverlappingFileLockException | IOException e) {
+            lock = null;
+        }
+        return lock != null;
+    }
+
+    /**
+     * Tests if this server is the leader, without trying to become it.
+     *
+     * @return true if this server holds the leader lock
+     */
+    public boolean isLeader() {
+        return lock != null && lock.isValid();
+    }
+
+    /**
+     * Writes the weather of a city into its record. Only the leader writes.
+     *
+     * @param cityName    the city whose weather is written
+     * @param weather     the city's weather state, or null if unknown
+     * @param coords      the city's latitude and longitude, or null if unknown
+     * @param nowMillis   the current epoch millis
+     *
+     * @return true if written, false if not the leader or the cache is full
+     */
+    public boolean write(String cityName, WeatherState weather, double[] coords, long nowMillis) {
+        if (!isLeader()) {
+            return false;
+        }
+        byte[] name = cityName.getBytes(StandardCharsets.UTF_8);
+        int offset = findRecord(name, true);
+        if (offset < 0) {
+            return false;
+        }
+        long sequence = buffer.getLong(offset + SEQUENCE);
+        buffer.putLong(offset + SEQUENCE, sequence | 1);
+        FENCE.incrementAndGet();
+        buffer.putLong(offset + UPDATED_MILLIS, nowMillis);
+        buffer.putDouble(offset + LATITUDE, coords != null ? coords[0] : Double.NaN);
+        buffer.putDouble(offset + LONGITUDE, coords != null ? coords[1] : Double.NaN);
+        buffer.putInt(offset + NAME_HASH, hash(name));
+        buffer.put(offset + WEATHER, (byte) (weather != null ? weather.ordinal() : -1));
+        for (int i = 0; i < name.length; i++) {
+            buffer.put(offset + NAME + i, name[i]);
+        }
+        buffer.put(offset + NAME_LENGTH, (byte) name.length);
+        FENCE.incrementAndGet();
+        buffer.putLong(offset + SEQUENCE, (sequence | 1) + 1);
+        return true;
+    }
+
+    /**
+     * Reads the record of a city.
+     *
+     * @param cityName the city whose record is read
+     *
+     * @return the city's record, or null if the leader has not written it or it kept changing while reading
+     */
+    public Record read(String cityName) {
+        byte[] name = cityName.getBytes(StandardCharsets.UTF_8);
+        int offset = findRecord(name, false);
+        if (offset < 0) {
+            return null;
+        }
+        for (int tries = 0; tries < MAX_READ_TRIES; tries++) {
+            long sequence = buffer.getLong(offset + SEQUENCE);
+            if ((sequence & 1) != 0) {
+                continue;
+            }
+            FENCE.incrementAndGet();
+            long updatedMillis = buffer.getLong(offset + UPDATED_MILLIS);
+            double latitude = buffer.getDouble(offset + LATITUDE);
+            double longitude = buffer.getDouble(offset + LONGITUDE);
+            int weather = buffer.get(offset + WEATHER);
+            FENCE.incrementAndGet();
+            if (buffer.getLong(offset + SEQUENCE) != sequence) {
+                continue;
+            }
+            WeatherState[] states = WeatherState.values();
+            return new Record(sequence, updatedMillis,
+                    weather >= 0 && weather < states.length ? states[weather] : null,
+                    Double.isNaN(latitude) || Double.isNaN(longitude) ? null : new double[]{latitude, longitude});
+        }
+        return null;
+    }
+
+    /**
+     * Finds the record of a city by probing from its hash. City names never move once written,
+     * so a record is found by name without a sequence check.
+     *
+     * @param name   the city's name in utf-8
+     * @param create true to return a free record when the city has none
+     *
+     * @return the record's offset in the file, or -1
+     */
+    private int findRecord(byte[] name, boolean create) {
+        if (name.length == 0 || name.length > MAX_NAME_BYTES) {
+            return -1;
+        }
+        int hash = hash(name);
+        for (int probe = 0; probe < CAPACITY; probe++) {
+            int offset = HEADER_SIZE + ((hash + probe) & (CAPACITY - 1)) * RECORD_SIZE;
+            int length = buffer.get(offset + NAME_LENGTH);
+            if (length == 0) {
+                return create ? offset : -1;
+            }
+            if (length == name.length && buffer.getInt(offset + NAME_HASH) == hash && nameEquals(offset, name)) {
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    private boolean nameEquals(int offset, byte[] name) {
+        for (int i = 0; i < name.length; i++) {
+            if (buffer.get(offset + NAME + i) != name[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(byte[] name) {
+        int hash = 0x811C9DC5;
+        for (byte b : name) {
+            hash = (hash ^ (b & 0xFF)) * 0x01000193;
+        }
+        return hash & 0x7FFFFFFF;
+    }
+
+    /**
+     * Gives up leadership and closes the cache's files.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (lock != null && lock.isValid()) {
+                lock.release();
+            }
+        }
+        finally {
+            lock = null;
+            dataFile.close();
+            lockFile.close();
+        }
+    }
+
+    /**
+     * A consistent copy of a city's record.
+     */
+    public static final class Record {
+
+        private final long sequence;
+        private final long updatedMillis;
+        private final WeatherState weather;
+        private final double[] coords;
+
+        Record(long sequence, long updatedMillis, WeatherState weather, double[] coords) {
+            this.sequence = sequence;
+            this.updatedMillis = updatedMillis;
+            this.weather = weather;
+            this.coords = coords;
+        }
+
+        /**
+         * Gets the record's sequence number, which grows every time the record is written.
+         *
+         * @return the record's sequence number
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets when the leader last wrote the record.
+         *
+         * @return epoch millis
+         */
+        public long getUpdatedMillis() {
+            return updatedMillis;
+        }
+
+        /**
+         * Gets the city's weather.
+         *
+         * @return the weather state, or null if unknown
+         */
+        public WeatherState getWeather() {
+            return weather;
+        }
+
+        /**
+         * Gets the city's coordinates.
+         *
+         * @return the latitude and longitude, or null if unknown
+         */
+        public double[] getCoords() {
+            return coords;
+        }
+    }
+}
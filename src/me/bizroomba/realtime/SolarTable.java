@@ -0,0 +1,155 @@
+package me.bizroomba.realtime;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * A piecewise-linear lookup table that warps one real day onto one minecraft day
+ * so that the real dawn, sunrise, noon, sunset and dusk of a location line up
+ * with their minecraft counterparts. Tables are computed once per day and are immutable.
+ */
+public final class SolarTable {
+
+    /**
+     * The number of milliseconds in a real day.
+     */
+    public static final long DAY_MILLIS = 86_400_000L;
+
+    /**
+     * The minecraft ticks of the solar events relative to sunrise (tick 0),
+     * in order: solar midnight, civil dawn, sunrise, noon, sunset, civil dusk, solar midnight.
+     */
+    private static final long[] EVENT_TICKS = {-6000L, -1000L, 0L, 6000L, 12000L, 13000L, 18000L};
+
+    private static final double SUNRISE_ZENITH = 90.833;
+    private static final double CIVIL_ZENITH = 96.0;
+    private static final double MIN_HOUR_ANGLE = 2.5;
+    private static final double MAX_HOUR_ANGLE = 177.5;
+
+    private final LocalDate date;
+    private final double latitude;
+    private final double longitude;
+    private final ZoneId zone;
+    private final long[] knotMillis;
+    private final long[] knotTicks;
+
+    private SolarTable(LocalDate date, double latitude, double longitude, ZoneId zone, long[] knotMillis, long[] knotTicks) {
+        this.date = date;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.zone = zone;
+        this.knotMillis = knotMillis;
+        this.knotTicks = knotTicks;
+    }
+
+    /**
+     * Computes the solar table of a location for the given date in the given time zone.
+     * Polar days and nights are clamped so that the day and night never fully vanish.
+     *
+     * @param date      the local date
+     * @param latitude  degrees north of the equator
+     * @param longitude degrees east of the prime meridian
+     * @param zone      the time zone of the date
+     *
+     * @return the solar table for the date
+     */
+    public static SolarTable compute(LocalDate date, double latitude, double longitude, ZoneId zone) {
+        ZoneOffset zoneOffset = zone.getRules().getOffset(date.atTime(12, 0));
+
+        // NOAA general solar position approximation
+        double gamma = 2 * Math.PI / (date.isLeapYear() ? 366 : 365) * (date.getDayOfYear() - 1);
+        double eqTime = 229.18 * (0.000075 + 0.001868 * Math.cos(gamma) - 0.032077 * Math.sin(gamma)
+                - 0.014615 * Math.cos(2 * gamma) - 0.040849 * Math.sin(2 * gamma));
+        double decl = 0.006918 - 0.399912 * Math.cos(gamma) + 0.070257 * Math.sin(gamma)
+                - 0.006758 * Math.cos(2 * gamma) + 0.000907 * Math.sin(2 * gamma)
+                - 0.002697 * Math.cos(3 * gamma) + 0.00148 * Math.sin(3 * gamma);
+
+        double sunHourAngle = hourAngle(SUNRISE_ZENITH, latitude, decl);
+        double civilHourAngle = Math.min(Math.max(hourAngle(CIVIL_ZENITH, latitude, decl), sunHourAngle + 1), MAX_HOUR_ANGLE + 1);
+
+        double noonMinutes = 720 - 4 * longitude - eqTime + zoneOffset.getTotalSeconds() / 60d;
+        double[] eventMinutes = {
+                noonMinutes - 720,
+                noonMinutes - 4 * civilHourAngle,
+                noonMinutes - 4 * sunHourAngle,
+                noonMinutes,
+                noonMinutes + 4 * sunHourAngle,
+                noonMinutes + 4 * civilHourAngle,
+                noonMinutes + 720
+        };
+
+        // repeat the events on the neighbouring days so that midnight can always be interpolated
+        int count = eventMinutes.length - 1;
+        long[] millis = new long[count * 3 + 1];
+        long[] ticks = new long[count * 3 + 1];
+        for (int day = -1; day <= 1; day++) {
+            for (int i = 0; i <= count; i++) {
+                int idx = (day + 1) * count + i;
+                millis[idx] = Math.round(eventMinutes[i] * 60_000) + day * DAY_MILLIS;
+                ticks[idx] = EVENT_TICKS[i] + day * 24000L;
+            }
+        }
+
+        long[] knotMillis = new long[millis.length + 2];
+        long[] knotTicks = new long[millis.length + 2];
+        int knots = 0;
+        knotMillis[knots] = 0;
+        knotTicks[knots++] = interpolate(millis, ticks, 0);
+        for (int i = 0; i < millis.length; i++) {
+            if (millis[i] > 0 && millis[i] < DAY_MILLIS) {
+                knotMillis[knots] = millis[i];
+                knotTicks[knots++] = ticks[i];
+            }
+        }
+        knotMillis[knots] = DAY_MILLIS;
+        knotTicks[knots++] = interpolate(millis, ticks, DAY_MILLIS);
+
+        return new SolarTable(date, latitude, longitude, zone,
+                Arrays.copyOf(knotMillis, knots), Arrays.copyOf(knotTicks, knots));
+    }
+
+    private static double hourAngle(double zenith, double latitude, double decl) {
+        double lat = Math.toRadians(latitude);
+        double cos = Math.cos(Math.toRadians(zenith)) / (Math.cos(lat) * Math.cos(decl)) - Math.tan(lat) * Math.tan(decl);
+        double degrees = Math.toDegrees(Math.acos(Math.max(-1, Math.min(1, cos))));
+        return Math.max(MIN_HOUR_ANGLE, Math.min(MAX_HOUR_ANGLE, degrees));
+    }
+
+    private static long interpolate(long[] millis, long[] ticks, long at) {
+        int idx = Arrays.binarySearch(millis, at);
+        if (idx >= 0) {
+            return ticks[idx];
+        }
+        int hi = -idx - 1;
+        int lo = hi - 1;
+        return ticks[lo] + (ticks[hi] - ticks[lo]) * (at - millis[lo]) / (millis[hi] - millis[lo]);
+    }
+
+    /**
+     * Tests if this table was computed for the given date, location and time zone.
+     *
+     * @param date      the local date
+     * @param latitude  degrees north of the equator
+     * @param longitude degrees east of the prime meridian
+     * @param zone      the time zone of the date
+     *
+     * @return true if the table can be reused
+     */
+    public boolean isFor(LocalDate date, double latitude, double longitude, ZoneId zone) {
+        return this.date.equals(date) && this.latitude == latitude && this.longitude == longitude && this.zone.equals(zone);
+    }
+
+    /**
+     * Gets the minecraft ticks relative to sunrise at the given time of the real day.
+     * Real midnight is roughly -6000 and the following midnight roughly 18000.
+     *
+     * @param millisOfDay milliseconds since local midnight
+     *
+     * @return the warped minecraft ticks
+     */
+    public long ticksAt(long millisOfDay) {
+        return interpolate(knotMillis, knotTicks, Math.max(0, Math.min(DAY_MILLIS, millisOfDay)));
+    }
+}
@@ -0,0 +1,223 @@
+package me.bizroomba.realtime;
+
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A piecewise speed of gametime over the real life week, like "22:00-06:00 4; sat,sun 10:00-18:00 0.5".
+ * Each rule is an optional list of days, a window of the day and the speed during that window;
+ * windows whose end is not after their start run past midnight, and later rules win where rules overlap.
+ * Outside every rule gametime runs at normal speed. The curve is integrated once when it is parsed into
+ * a table of the scaled time elapsed at the start of each piece of the week, so the scaled time between two
+ * moments is a binary search and an interpolation per moment. Immutable.
+ */
+public final class SpeedCurve {
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final double SECONDS_PER_WEEK = MINUTES_PER_WEEK * 60d;
+
+    private final String spec;
+    // the pieces of the week, from monday midnight, and the scaled seconds elapsed at the start of each
+    private final double[] starts;
+    private final double[] speeds;
+    private final double[] scaled;
+    private final double weekScaled;
+
+    private SpeedCurve(String spec, double[] starts, double[] speeds) {
+        this.spec = spec;
+        this.starts = starts;
+        this.speeds = speeds;
+        this.scaled = new double[starts.length];
+        double total = 0;
+        for (int i = 0; i < starts.length; i++) {
+            scaled[i] = total;
+            double end = i + 1 < starts.length ? starts[i + 1] : SECONDS_PER_WEEK;
+            total += speeds[i] * (end - starts[i]);
+        }
+        this.weekScaled = total;
+    }
+
+    /**
+     * Parses a speed curve.
+     *
+     * @param spec rules separated by semicolons, each like "[&lt;days&gt;] &lt;from&gt;-&lt;to&gt; &lt;speed&gt;",
+     *             where days are comma separated days or day ranges like "mon-fri"
+     *
+     * @return the speed curve
+     * @throws IllegalArgumentException when a rule is not valid
+     */
+    public static SpeedCurve parse(String spec) throws IllegalArgumentException {
+        double[] minuteSpeeds = new double[MINUTES_PER_WEEK];
+        Arrays.fill(minuteSpeeds, 1.0);
+        List<String> rules = new ArrayList<>();
+        for (String rule : spec.split(";")) {
+            rule = rule.trim().replaceAll("\\s+", " ");
+            if (rule.isEmpty()) {
+                continue;
+            }
+            String[] parts = rule.split(" ");
+            if (parts.length != 2 && parts.length != 3) {
+                throw new IllegalArgumentException("\"" + rule + "\" should be like \"[<days>] <from>-<to> <speed>\"");
+            }
+            Set<DayOfWeek> days = parts.length == 3 ? parseDays(parts[0]) : EnumSet.allOf(DayOfWeek.class);
+            String window = parts[parts.length - 2];
+            int dash = window.indexOf('-');
+            if (dash < 0) {
+                throw new IllegalArgumentException("\"" + window + "\" should be a window like \"22:00-06:00\"");
+            }
+            int from = parseMinuteOfDay(window.substring(0, dash));
+            int to = parseMinuteOfDay(window.substring(dash + 1));
+            double speed;
+            try {
+                speed = Double.parseDouble(parts[parts.length - 1]);
+            }
+            catch (NumberFormatException e) {
+                throw new IllegalArgumentException("\"" + parts[parts.length - 1] + "\" is not a speed");
+            }
+            if (!(speed > 0) || Double.isInfinite(speed)) {
+                throw new IllegalArgumentException("speeds should be positive, so gametime never runs backwards");
+            }
+
+            int length = to > from ? to - from : MINUTES_PER_DAY - from + to;
+            for (DayOfWeek day : days) {
+                int start = (day.getValue() - 1) * MINUTES_PER_DAY + from;
+                for (int minute = start; minute < start + length; minute++) {
+                    minuteSpeeds[minute % MINUTES_PER_WEEK] = speed;
+                }
+            }
+            rules.add(rule);
+        }
+
+        // merge equal minutes into pieces
+        List<Integer> pieceStarts = new ArrayList<>();
+        for (int minute = 0; minute < MINUTES_PER_WEEK; minute++) {
+            if (minute == 0 || minuteSpeeds[minute] != minuteSpeeds[minute - 1]) {
+                pieceStarts.add(minute);
+            }
+        }
+        double[] starts = new double[pieceStarts.size()];
+        double[] speeds = new double[pieceStarts.size()];
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = pieceStarts.get(i) * 60d;
+            speeds[i] = minuteSpeeds[pieceStarts.get(i)];
+        }
+        return new SpeedCurve(String.join("; ", rules), starts, speeds);
+    }
+
+    private static Set<DayOfWeek> parseDays(String daysName) {
+        Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+        for (String range : daysName.split(",")) {
+            int dash = range.indexOf('-');
+            DayOfWeek first = parseDay(dash < 0 ? range : range.substring(0, dash));
+            DayOfWeek last = dash < 0 ? first : parseDay(range.substring(dash + 1));
+            for (DayOfWeek day = first; ; day = day.plus(1)) {
+                days.add(day);
+                if (day == last) {
+                    break;
+                }
+            }
+        }
+        return days;
+    }
+
+    private static DayOfWeek parseDay(String dayName) {
+        String prefix = dayName.trim().toUpperCase(Locale.ROOT);
+        if (prefix.length() >= 3) {
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day.name().startsWith(prefix)) {
+                    return day;
+                }
+            }
+        }
+        throw new IllegalArgumentException("\"" + dayName + "\" is not a day of the week");
+    }
+
+    private static int parseMinuteOfDay(String timeName) {
+        if (timeName.equals("24:00")) {
+            return MINUTES_PER_DAY;
+        }
+        try {
+            return LocalTime.parse(timeName).toSecondOfDay() / 60;
+        }
+        catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("\"" + timeName + "\" is not a time like \"22:00\"");
+        }
+    }
+
+    /**
+     * Gets the scaled seconds between two moments, which is how far gametime advances between them
+     * in real life seconds at normal speed.
+     *
+     * @param from the earlier moment
+     * @param to   the later moment
+     *
+     * @return the scaled seconds, negative if to is before from
+     */
+    public double scaledSecondsBetween(LocalDateTime from, LocalDateTime to) {
+        long fromDays = from.toLocalDate().toEpochDay() + 3;
+        long toDays = to.toLocalDate().toEpochDay() + 3;
+        long weeks = Math.floorDiv(toDays, 7) - Math.floorDiv(fromDays, 7);
+        return weeks * weekScaled + scaledSecondsIntoWeek(Math.floorMod(toDays, 7), to.toLocalTime())
+                - scaledSecondsIntoWeek(Math.floorMod(fromDays, 7), from.toLocalTime());
+    }
+
+    /**
+     * Looks up the scaled seconds from monday midnight to a moment of the week.
+     *
+     * @param dayOfWeek the days since monday
+     * @param time      the time of the day
+     */
+    private double scaledSecondsIntoWeek(long dayOfWeek, LocalTime time) {
+        double seconds = dayOfWeek * 86400d + time.toNanoOfDay() / 1e9;
+        int piece = Arrays.binarySearch(starts, seconds);
+        if (piece < 0) {
+            piece = -piece - 2;
+        }
+        return scaled[piece] + speeds[piece] * (seconds - starts[piece]);
+    }
+
+    /**
+     * Gets the number of pieces the week is split into.
+     *
+     * @return the number of pieces with a constant speed
+     */
+    public int getPieceCount() {
+        return starts.length;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SpeedCurve)) {
+            return false;
+        }
+        SpeedCurve other = (SpeedCurve) obj;
+        return Arrays.equals(starts, other.starts) && Arrays.equals(speeds, other.speeds);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(starts) + Arrays.hashCode(speeds);
+    }
+
+    /**
+     * Gets the curve's rules, in the format it is parsed from.
+     *
+     * @return the rules separated by semicolons
+     */
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,342 @@
+package me.bizroomba.realtime;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the settings profiles and world assignments in an SQLite database, for servers with
+ * too many of them for the config. Everything is loaded into memory when the store is opened,
+ * so reads never touch the database, and every change is written as its own small statement
+ * on a background thread, in order. The sqlite driver shipped with spigot is used.
+ */
+public final class SqliteSettingsStore implements SettingsStore {
+
+    private static final String MIGRATED_KEY = "migrated-from-yaml";
+
+    private final Connection connection;
+    private final Logger logger;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "RealTime settings writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Map<String, String>> settings = new LinkedHashMap<>();
+    private final Map<String, String> worldProfiles = new LinkedHashMap<>();
+    private final Map<String, Set<String>> profileWorlds = new HashMap<>();
+    private final boolean migrated;
+
+    private SqliteSettingsStore(Connection connection, Logger logger) throws SQLException {
+        this.connection = connection;
+        this.logger = logger;
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS profile_settings ("
+                    + "profile TEXT NOT NULL, key TEXT NOT NULL, value TEXT NOT NULL, PRIMARY KEY (profile, key))");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS world_profiles ("
+                    + "world TEXT NOT NULL PRIMARY KEY, profile TEXT NOT NULL)");
+            statement.executeUpdate("CREATE INDEX IF NOT EXISTS world_profiles_profile ON world_profiles (profile)");
+            statement.executeUpdate("CREATE TABLE IF NOT EXISTS meta (key TEXT NOT NULL PRIMARY KEY, value TEXT NOT NULL)");
+
+            try (ResultSet rows = statement.executeQuery("SELECT profile, key, value FROM profile_settings ORDER BY profile")) {
+                while (rows.next()) {
+                    settings.computeIfAbsent(rows.getString(1), k -> new LinkedHashMap<>()).put(rows.getString(2), rows.getString(3));
+                }
+            }
+            try (ResultSet rows = statement.executeQuery("SELECT world, profile FROM world_profiles ORDER BY world")) {
+                while (rows.next()) {
+                    putWorldProfile(rows.getString(1), rows.getString(2));
+                }
+            }
+            try (ResultSet rows = statement.executeQuery("SELECT 1 FROM meta WHERE key = '" + MIGRATED_KEY + "'")) {
+                migrated = rows.next();
+            }
+        }
+    }
+
+    /**
+     * Opens or creates the settings database.
+     *
+     * @param file   the database file
+     * @param logger where failed writes are reported
+     *
+     * @return the opened store
+     * @throws SQLException when the database could not be opened or the sqlite driver is missing
+     */
+    public static SqliteSettingsStore open(File file, Logger logger) throws SQLException {
+        try {
+            Class.forName("org.sqlite.JDBC");
+        }
+        catch (ClassNotFoundException e) {
+            throw new SQLException("The sqlite driver is missing", e);
+        }
+        Connection connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        try {
+            return new SqliteSettingsStore(connection, logger);
+        }
+        catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Tests if the settings of the config have already been copied into this store.
+     *
+     * @return true if a migration happened before
+     */
+    public boolean isMigrated() {
+        return migrated;
+    }
+
+    /**
+     * Copies every settings profile and world assignment of another store into this one
+     * in a single transaction and marks this store as migrated. Waits for the copy to finish.
+     *
+     * @param source the store to copy, usually the config
+     *
+     * @throws SQLException when the copy failed, in which case nothing was copied
+     */
+    public void migrateFrom(SettingsStore source) throws SQLException {
+        Map<String, Map<String, String>> sourceSettings = new LinkedHashMap<>();
+        for (String profileName : source.getProfileNames()) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String key : SettingsProfile.KEYS) {
+                String value = source.getString(profileName, key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+            sourceSettings.put(profileName, values);
+        }
+        Map<String, String> sourceWorlds = new LinkedHashMap<>();
+        for (String worldName : source.getWorldNames()) {
+            String profileName = source.getProfileNameFor(worldName);
+            if (profileName != null) {
+                sourceWorlds.put(worldName, profileName);
+            }
+        }
+
+        try {
+            writer.submit(() -> {
+                connection.setAutoCommit(false);
+                try (PreparedStatement setting = connection.prepareStatement(
+                        "INSERT OR REPLACE INTO profile_settings (profile, key, value) VALUES (?, ?, ?)");
+                     PreparedStatement world = connection.prepareStatement(
+                             "INSERT OR REPLACE INTO world_profiles (world, profile) VALUES (?, ?)");
+                     PreparedStatement meta = connection.prepareStatement(
+                             "INSERT OR REPLACE INTO meta (key, value) VALUES (?, ?)")) {
+                    for (Map.Entry<String, Map<String, String>> profile : sourceSettings.entrySet()) {
+                        for (Map.Entry<String, String> value : profile.getValue().entrySet()) {
+                            setting.setString(1, profile.getKey());
+                            setting.setString(2, value.getKey());
+                            setting.setString(3, value.getValue());
+                            setting.addBatch();
+                        }
+                    }
+                    setting.executeBatch();
+                    for (Map.Entry<String, String> entry : sourceWorlds.entrySet()) {
+                        world.setString(1, entry.getKey());
+                        world.setString(2, entry.getValue());
+                        world.addBatch();
+                    }
+                    world.executeBatch();
+                    meta.setString(1, MIGRATED_KEY);
+                    meta.setString(2, String.valueOf(System.currentTimeMillis()));
+                    meta.executeUpdate();
+                    connection.commit();
+                }
+                catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+                finally {
+                    connection.setAutoCommit(true);
+                }
+                return null;
+            }).get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while migrating the settings", e);
+        }
+        catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException ? (SQLException) e.getCause() : new SQLException(e.getCause());
+        }
+
+        for (Map.Entry<String, Map<String, String>> profile : sourceSettings.entrySet()) {
+            settings.computeIfAbsent(profile.getKey(), k -> new LinkedHashMap<>()).putAll(profile.getValue());
+        }
+        for (Map.Entry<String, String> entry : sourceWorlds.entrySet()) {
+            putWorldProfile(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public boolean getBoolean(String profileName, String key, boolean def) {
+        String value = getString(profileName, key);
+        if ("true".equalsIgnoreCase(value)) return true;
+        if ("false".equalsIgnoreCase(value)) return false;
+        return def;
+    }
+
+    @Override
+    public long getLong(String profileName, String key, long def) {
+        String value = getString(profileName, key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value);
+            }
+            catch (NumberFormatException e) {
+                try {
+                    return (long) Double.parseDouble(value);
+                }
+                catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        return def;
+    }
+
+    @Override
+    public double getDouble(String profileName, String key, double def) {
+        String value = getString(profileName, key);
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            }
+            catch (NumberFormatException ignored) {
+            }
+        }
+        return def;
+    }
+
+    @Override
+    public String getString(String profileName, String key) {
+        Map<String, String> values = settings.get(profileName);
+        return values != null ? values.get(key) : null;
+    }
+
+    @Override
+    public void setValue(String profileName, String key, Object value) {
+        if (value == null) {
+            Map<String, String> values = settings.get(profileName);
+            if (values != null) {
+                values.remove(key);
+            }
+            write("DELETE FROM profile_settings WHERE profile = ? AND key = ?", profileName, key);
+        }
+        else {
+            String text = String.valueOf(value);
+            settings.computeIfAbsent(profileName, k -> new LinkedHashMap<>()).put(key, text);
+            write("INSERT OR REPLACE INTO profile_settings (profile, key, value) VALUES (?, ?, ?)", profileName, key, text);
+        }
+    }
+
+    @Override
+    public void clearProfile(String profileName) {
+        settings.remove(profileName);
+        write("DELETE FROM profile_settings WHERE profile = ?", profileName);
+    }
+
+    @Override
+    public List<String> getProfileNames() {
+        return new ArrayList<>(settings.keySet());
+    }
+
+    @Override
+    public String getProfileNameFor(String worldName) {
+        return worldProfiles.get(worldName);
+    }
+
+    @Override
+    public void setProfileFor(String worldName, String profileName) {
+        removeWorldProfile(worldName);
+        if (profileName == null) {
+            write("DELETE FROM world_profiles WHERE world = ?", worldName);
+        }
+        else {
+            putWorldProfile(worldName, profileName);
+            write("INSERT OR REPLACE INTO world_profiles (world, profile) VALUES (?, ?)", worldName, profileName);
+        }
+    }
+
+    @Override
+    public List<String> getWorldNames() {
+        return new ArrayList<>(worldProfiles.keySet());
+    }
+
+    @Override
+    public List<String> getWorldNamesFor(String profileName) {
+        return new ArrayList<>(profileWorlds.getOrDefault(profileName, Collections.emptySet()));
+    }
+
+    private void putWorldProfile(String worldName, String profileName) {
+        worldProfiles.put(worldName, profileName);
+        profileWorlds.computeIfAbsent(profileName, k -> new LinkedHashSet<>()).add(worldName);
+    }
+
+    private void removeWorldProfile(String worldName) {
+        String previousProfileName = worldProfiles.remove(worldName);
+        if (previousProfileName != null) {
+            Set<String> worldNames = profileWorlds.get(previousProfileName);
+            worldNames.remove(worldName);
+            if (worldNames.isEmpty()) {
+                profileWorlds.remove(previousProfileName);
+            }
+        }
+    }
+
+    private void write(String sql, String... params) {
+        writer.execute(() -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    statement.setString(i + 1, params[i]);
+                }
+                statement.executeUpdate();
+            }
+            catch (SQLException e) {
+                logger.log(Level.WARNING, "Could not save a settings change to the database", e);
+            }
+        });
+    }
+
+    /**
+     * Finishes the pending writes and closes the database.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Gave up waiting for settings changes to be saved to the database");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            logger.log(Level.WARNING, "Could not close the settings database", e);
+        }
+    }
+}
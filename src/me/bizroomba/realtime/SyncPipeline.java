@@ -0,0 +1,296 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.GameRule;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.io.Closeable;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.stream.IntStream;
+
+/**
+ * Splits the world sync into a compute phase and an apply phase, for servers with many worlds.
+ * Every tick the main thread captures an immutable snapshot of the loaded worlds, their gamerules and
+ * full times, and hands it to a pool of workers, which resolve each world's profile, scheduled override,
+ * final gametime, day phase and weather in parallel for the moment the targets will be applied, without
+ * ever reading the worlds themselves. The workers publish a compact
+ * list of the worlds whose time must be set, because the server advances their clocks itself, and of
+ * the worlds whose day phase or weather target changed. The next tick the main thread drains it, only
+ * setting the gametime, setting the weather where the world doesn't show it yet, and calling events
+ * for the targets that changed. At most one compute job is in flight, so a list is never overwritten
+ * before it is drained.
+ */
+public final class SyncPipeline implements Closeable {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int REFRESH_JOBS = 20;
+
+    private final int workers;
+    private final ForkJoinPool pool;
+    private final AtomicReference<ApplyList> published = new AtomicReference<>();
+    private final AtomicBoolean computing = new AtomicBoolean(false);
+
+    // only used by the compute job, and jobs never overlap
+    private Map<World, CompiledProfile> lastProfiles = new IdentityHashMap<>();
+    private Map<World, WeatherState> lastWeather = new IdentityHashMap<>();
+    private Map<World, DayPhase> lastPhases = new IdentityHashMap<>();
+    private Map<World, ScheduledOverride> lastOverrides = new IdentityHashMap<>();
+    private int jobs = 0;
+
+    /**
+     * Starts the pipeline's workers.
+     *
+     * @param workers the number of worker threads
+     */
+    public SyncPipeline(int workers) {
+        this.workers = workers;
+        this.pool = new ForkJoinPool(workers, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("RealTime sync worker " + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * Gets the number of worker threads.
+     *
+     * @return the number of workers
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Applies the targets published since the last tick and starts computing the next ones.
+     * This must be called from the main thread once per tick.
+     *
+     * @param plugin the enabled plugin
+     */
+    public void tick(RealTimePlugin plugin) {
+        // a job that is no longer computing has already published, so draining after this sees its list
+        boolean idle = computing.compareAndSet(false, true);
+
+        ApplyList applyList = published.getAndSet(null);
+        if (applyList != null) {
+            for (int i = 0; i < applyList.size; i++) {
+                // a world unloaded since the snapshot is skipped
+                if (plugin.getServer().getWorld(applyList.worlds[i].getName()) == applyList.worlds[i]) {
+                    PluginUtils.applySyncTarget(applyList.worlds[i], applyList.profileNames[i], applyList.gametimes[i],
+                            applyList.phases[i], applyList.weathers[i], TraceKind.SYNC, false, applyList.changed[i]);
+                }
+            }
+        }
+
+        if (!idle) {
+            return;
+        }
+
+        List<World> loadedWorlds = plugin.getServer().getWorlds();
+        World[] worlds = loadedWorlds.toArray(new World[0]);
+        String[] worldNames = new String[worlds.length];
+        boolean[] daylightCycles = new boolean[worlds.length];
+        boolean[] weatherCycles = new boolean[worlds.length];
+        long[] fullTimes = new long[worlds.length];
+        for (int i = 0; i < worlds.length; i++) {
+            worldNames[i] = worlds[i].getName();
+            daylightCycles[i] = Optional.ofNullable(worlds[i].getGameRuleValue(GameRule.DO_DAYLIGHT_CYCLE)).orElse(true);
+            weatherCycles[i] = Optional.ofNullable(worlds[i].getGameRuleValue(GameRule.DO_WEATHER_CYCLE)).orElse(true);
+            fullTimes[i] = worlds[i].getFullTime();
+        }
+        Set<World> occupiedWorlds = null;
+        if (plugin.isSuspendIdleWorlds()) {
+            occupiedWorlds = new HashSet<>();
+            for (Player player : plugin.getServer().getOnlinePlayers()) {
+                occupiedWorlds.add(player.getWorld());
+            }
+        }
+        Snapshot snapshot = new Snapshot(plugin.getCompiledSettings(), worlds, worldNames, daylightCycles, weatherCycles,
+                fullTimes, occupiedWorlds, LocalDateTime.now(plugin.clock).plusNanos(TICK_NANOS));
+
+        try {
+            pool.execute(() -> {
+                try {
+                    published.set(compute(plugin, snapshot));
+                }
+                catch (RuntimeException e) {
+                    plugin.getLogger().log(Level.WARNING, "Could not compute the world sync targets", e);
+                }
+                finally {
+                    computing.set(false);
+                }
+            });
+        }
+        catch (RuntimeException e) {
+            computing.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Computes the targets of a snapshot. Runs on a worker, and resolves the worlds in parallel on the pool.
+     * Only the snapshot and the previous job's targets are read, and the previous targets are only
+     * replaced once every world is resolved.
+     */
+    private ApplyList compute(RealTimePlugin plugin, Snapshot snapshot) {
+        int count = snapshot.worlds.length;
+        CompiledProfile[] profiles = new CompiledProfile[count];
+        ScheduledOverride[] overrides = new ScheduledOverride[count];
+        long[] gametimes = new long[count];
+        DayPhase[] phases = new DayPhase[count];
+        WeatherState[] weathers = new WeatherState[count];
+        boolean[] changed = new boolean[count];
+
+        // every so often every target is treated as changed, to catch up with syncs done on the main thread
+        boolean refresh = ++jobs % REFRESH_JOBS == 0;
+        // profiles with equal game clocks share a single gametime computation, and profiles their weather lookup
+        Map<GameClock, Long> clockGametimes = new ConcurrentHashMap<>();
+        Map<CompiledProfile, WeatherState> profileWeather = new ConcurrentHashMap<>();
+        // a parallel stream started from a pool thread runs on that pool
+        IntStream.range(0, count).parallel().forEach(i -> {
+            if (snapshot.occupiedWorlds != null && !snapshot.occupiedWorlds.contains(snapshot.worlds[i])) {
+                return;
+            }
+            CompiledProfile profile = snapshot.settings.getProfileFor(snapshot.worldNames[i]);
+            if (profile == null) {
+                return;
+            }
+            boolean syncTime = profile.isSyncTime() && snapshot.daylightCycles[i];
+            long gametime = profile.isSyncTime() ? clockGametimes.computeIfAbsent(profile.getClock(), c -> c.gameTimeAt(snapshot.now)) : -1;
+            WeatherState weather = profile.isSyncWeather() && snapshot.weatherCycles[i]
+                    ? profileWeather.computeIfAbsent(profile, p -> plugin.getProfileWeather(p, snapshot.now)) : null;
+            ScheduledOverride override = plugin.overrideSchedule.getOverrideFor(snapshot.worldNames[i], profile.getName());
+            if (override != null && override.getTime() >= 0) {
+                gametime = override.applyTime(profile.isSyncTime() ? gametime : snapshot.fullTimes[i]);
+                syncTime = true;
+            }
+            if (override != null && override.getWeather() != null) {
+                weather = override.getWeather();
+            }
+            DayPhase phase = syncTime ? DayPhase.of(gametime) : null;
+
+            World world = snapshot.worlds[i];
+            profiles[i] = profile;
+            overrides[i] = override;
+            gametimes[i] = gametime;
+            phases[i] = phase;
+            weathers[i] = weather;
+            changed[i] = refresh || lastProfiles.get(world) != profile || lastOverrides.get(world) != override
+                    || lastWeather.get(world) != weather || lastPhases.get(world) != phase;
+        });
+
+        Map<World, CompiledProfile> targetProfiles = new IdentityHashMap<>();
+        Map<World, WeatherState> targetWeather = new IdentityHashMap<>();
+        Map<World, DayPhase> targetPhases = new IdentityHashMap<>();
+        Map<World, ScheduledOverride> targetOverrides = new IdentityHashMap<>();
+        ApplyList applyList = new ApplyList(count);
+        for (int i = 0; i < count; i++) {
+            if (profiles[i] == null) {
+                continue;
+            }
+            World world = snapshot.worlds[i];
+            targetProfiles.put(world, profiles[i]);
+            if (weathers[i] != null) {
+                targetWeather.put(world, weathers[i]);
+            }
+            if (phases[i] != null) {
+                targetPhases.put(world, phases[i]);
+            }
+            if (overrides[i] != null) {
+                targetOverrides.put(world, overrides[i]);
+            }
+            // the server advances a world's clock itself, so time synced worlds are set every tick
+            if (phases[i] != null || changed[i]) {
+                applyList.add(world, profiles[i].getName(), gametimes[i], phases[i], weathers[i], changed[i]);
+            }
+        }
+        lastProfiles = targetProfiles;
+        lastWeather = targetWeather;
+        lastPhases = targetPhases;
+        lastOverrides = targetOverrides;
+        return applyList.size > 0 ? applyList : null;
+    }
+
+    /**
+     * Stops the workers. Targets that were not drained yet are dropped.
+     */
+    @Override
+    public void close() {
+        pool.shutdownNow();
+        published.set(null);
+    }
+
+    /**
+     * The main thread's capture of what the workers need, never changed after it is made.
+     */
+    private static final class Snapshot {
+
+        private final CompiledSettings settings;
+        private final World[] worlds;
+        private final String[] worldNames;
+        private final boolean[] daylightCycles;
+        private final boolean[] weatherCycles;
+        private final long[] fullTimes;
+        private final Collection<World> occupiedWorlds;
+        private final LocalDateTime now;
+
+        Snapshot(CompiledSettings settings, World[] worlds, String[] worldNames, boolean[] daylightCycles, boolean[] weatherCycles,
+                 long[] fullTimes, Collection<World> occupiedWorlds, LocalDateTime now) {
+            this.settings = settings;
+            this.worlds = worlds;
+            this.worldNames = worldNames;
+            this.daylightCycles = daylightCycles;
+            this.weatherCycles = weatherCycles;
+            this.fullTimes = fullTimes;
+            this.occupiedWorlds = occupiedWorlds;
+            this.now = now;
+        }
+    }
+
+    /**
+     * The resolved targets of one compute job, in parallel arrays.
+     */
+    private static final class ApplyList {
+
+        private final World[] worlds;
+        private final String[] profileNames;
+        private final long[] gametimes;
+        private final DayPhase[] phases;
+        private final WeatherState[] weathers;
+        private final boolean[] changed;
+        private int size = 0;
+
+        ApplyList(int capacity) {
+            worlds = new World[capacity];
+            profileNames = new String[capacity];
+            gametimes = new long[capacity];
+            phases = new DayPhase[capacity];
+            weathers = new WeatherState[capacity];
+            changed = new boolean[capacity];
+        }
+
+        void add(World world, String profileName, long gametime, DayPhase phase, WeatherState weather, boolean targetChanged) {
+            worlds[size] = world;
+            profileNames[size] = profileName;
+            gametimes[size] = gametime;
+            phases[size] = phase;
+            weathers[size] = weather;
+            changed[size] = targetChanged;
+            size++;
+        }
+    }
+}
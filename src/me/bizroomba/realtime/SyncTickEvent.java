@@ -0,0 +1,54 @@
+package me.bizroomba.realtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR event of a sync tick. Only loaded through {@link FlightRecorder} when JFR is available.
+ */
+@Name("me.bizroomba.realtime.SyncTick")
+@Label("RealTime Sync Tick")
+@Category("RealTime")
+@Description("The worlds synced to real life in one tick")
+@StackTrace(false)
+final class SyncTickEvent extends Event {
+
+    // checked before allocating, so a disabled event costs a field read
+    private static final EventType TYPE = EventType.getEventType(SyncTickEvent.class);
+
+    @Label("Worlds Updated")
+    int worldsUpdated;
+
+    @Label("Weather Writes Skipped")
+    @Description("Weather writes skipped because the world already showed the weather")
+    int writesSkipped;
+
+    @Label("Pipelined")
+    @Description("Whether the targets were computed by sync workers")
+    boolean pipelined;
+
+    static Object start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        SyncTickEvent event = new SyncTickEvent();
+        event.begin();
+        return event;
+    }
+
+    static void finish(Object started, int worldsUpdated, int writesSkipped, boolean pipelined) {
+        SyncTickEvent event = (SyncTickEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.worldsUpdated = worldsUpdated;
+            event.writesSkipped = writesSkipped;
+            event.pipelined = pipelined;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package me.bizroomba.realtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, lock-free ring buffer of sync and fetch decisions.
+ * Recording an entry only claims a slot and stores its fields, without formatting or allocating,
+ * so it is cheap enough to do for every world on every tick. Any thread may record or read entries;
+ * readers skip slots that were overwritten while being read.
+ */
+public final class SyncTrace {
+
+    private final int mask;
+    private final AtomicLong cursor = new AtomicLong();
+    private final AtomicLongArray published;
+    private final long[] times;
+    private final TraceKind[] kinds;
+    private final String[] subjects;
+    private final String[] profileNames;
+    private final long[] values;
+    private final WeatherState[] weathers;
+    private final String[] details;
+
+    /**
+     * Creates an empty trace.
+     *
+     * @param capacity the number of entries kept, rounded up to a power of two
+     */
+    SyncTrace(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mask = size - 1;
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, -1);
+        }
+        times = new long[size];
+        kinds = new TraceKind[size];
+        subjects = new String[size];
+        profileNames = new String[size];
+        values = new long[size];
+        weathers = new WeatherState[size];
+        details = new String[size];
+    }
+
+    /**
+     * Records an entry, overwriting the oldest entry if the trace is full.
+     *
+     * @param kind        the kind of decision
+     * @param subject     the world, city or profile the entry is about
+     * @param profileName the settings profile involved, or null
+     * @param value       the applied gametime or the fetch latency, or -1
+     * @param weather     the applied or fetched weather state, or null
+     * @param detail      a short constant detail, or null
+     */
+    public void record(TraceKind kind, String subject, String profileName, long value, WeatherState weather, String detail) {
+        long sequence = cursor.getAndIncrement();
+        int idx = (int) (sequence & mask);
+        // the atomic swap keeps the field stores below from being seen before the slot is unpublished
+        published.getAndSet(idx, -1);
+        times[idx] = System.currentTimeMillis();
+        kinds[idx] = kind;
+        subjects[idx] = subject;
+        profileNames[idx] = profileName;
+        values[idx] = value;
+        weathers[idx] = weather;
+        details[idx] = detail;
+        published.lazySet(idx, sequence);
+    }
+
+    /**
+     * Reads the most recent entries, newest first.
+     *
+     * @param filter a world, city or profile name the entries must match, or null for all entries
+     * @param skip   the number of matching entries to skip
+     * @param limit  the maximum number of entries to read
+     *
+     * @return the matching entries
+     */
+    public List<TraceEntry> read(String filter, int skip, int limit) {
+        List<TraceEntry> entries = new ArrayList<>();
+        long newest = cursor.get() - 1;
+        long oldest = Math.max(0, newest - mask);
+        for (long sequence = newest; sequence >= oldest && entries.size() < limit; sequence--) {
+            int idx = (int) (sequence & mask);
+            if (published.get(idx) != sequence) {
+                continue;
+            }
+            TraceEntry entry = new TraceEntry(sequence, times[idx], kinds[idx], subjects[idx],
+                    profileNames[idx], values[idx], weathers[idx], details[idx]);
+            if (published.get(idx) != sequence) {
+                continue;
+            }
+            if (filter != null && !entry.matches(filter)) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            entries.add(entry);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,136 @@
+package me.bizroomba.realtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel. Items are hashed into a fixed ring of slots by their deadline,
+ * and advancing the wheel by one tick only visits the slot of that tick, so the cost of a tick
+ * doesn't grow with the number of scheduled items. Items due more than one turn of the wheel away
+ * stay in their slot until the wheel comes around to their deadline.
+ * This is only used from the main thread.
+ *
+ * @param <T> the type of scheduled items
+ */
+public final class TimingWheel<T> {
+
+    private final List<List<Entry<T>>> slots;
+    private final int mask;
+    private long currentTick;
+    private int size = 0;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param slotCount the number of slots, rounded up to a power of two
+     * @param startTick the tick the wheel starts at
+     */
+    public TimingWheel(int slotCount, long startTick) {
+        int count = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+        slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            slots.add(new ArrayList<>());
+        }
+        mask = count - 1;
+        currentTick = startTick;
+    }
+
+    /**
+     * Gets the number of ticks in one turn of the wheel.
+     *
+     * @return the number of slots
+     */
+    public int getSlotCount() {
+        return mask + 1;
+    }
+
+    /**
+     * Gets the tick the wheel was last advanced to.
+     *
+     * @return the current tick
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * Gets the number of scheduled items.
+     *
+     * @return the number of items not yet due
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Schedules an item. Items whose deadline already passed are due on the next tick.
+     *
+     * @param deadline the tick the item is due at
+     * @param item     the item
+     */
+    public void schedule(long deadline, T item) {
+        long tick = Math.max(deadline, currentTick + 1);
+        slots.get((int) (tick & mask)).add(new Entry<>(tick, item));
+        size++;
+    }
+
+    /**
+     * Advances the wheel tick by tick, passing every item that became due to a consumer.
+     * The consumer may schedule new items. Advancing more than a whole turn at once visits every slot once.
+     *
+     * @param tick the tick to advance to, ignored if not after the current tick
+     * @param due  receives the items that became due, in order of their slots
+     */
+    public void advance(long tick, Consumer<T> due) {
+        if (tick <= currentTick) {
+            return;
+        }
+        long from = Math.max(currentTick + 1, tick - mask);
+        currentTick = tick;
+        for (long t = from; t <= tick; t++) {
+            List<Entry<T>> slot = slots.get((int) (t & mask));
+            List<T> dueItems = null;
+            for (int i = slot.size() - 1; i >= 0; i--) {
+                Entry<T> entry = slot.get(i);
+                if (entry.deadline <= tick) {
+                    // remove by swapping in the last entry, order within a slot doesn't matter
+                    slot.set(i, slot.get(slot.size() - 1));
+                    slot.remove(slot.size() - 1);
+                    size--;
+                    if (dueItems == null) {
+                        dueItems = new ArrayList<>();
+                    }
+                    dueItems.add(entry.item);
+                }
+            }
+            if (dueItems != null) {
+                dueItems.forEach(due);
+            }
+        }
+    }
+
+    /**
+     * Removes every scheduled item and moves the wheel to a tick.
+     *
+     * @param startTick the tick the wheel restarts at
+     */
+    public void clear(long startTick) {
+        for (List<Entry<T>> slot : slots) {
+            slot.clear();
+        }
+        size = 0;
+        currentTick = startTick;
+    }
+
+    private static final class Entry<T> {
+
+        private final long deadline;
+        private final T item;
+
+        Entry(long deadline, T item) {
+            this.deadline = deadline;
+            this.item = item;
+        }
+    }
+}
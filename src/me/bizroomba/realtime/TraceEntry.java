@@ -0,0 +1,138 @@
+package me.bizroomba.realtime;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * An immutable copy of an entry read from the sync trace.
+ */
+public final class TraceEntry {
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+    private final long sequence;
+    private final long timeMillis;
+    private final TraceKind kind;
+    private final String subject;
+    private final String profileName;
+    private final long value;
+    private final WeatherState weather;
+    private final String detail;
+
+    TraceEntry(long sequence, long timeMillis, TraceKind kind, String subject, String profileName, long value, WeatherState weather, String detail) {
+        this.sequence = sequence;
+        this.timeMillis = timeMillis;
+        this.kind = kind;
+        this.subject = subject;
+        this.profileName = profileName;
+        this.value = value;
+        this.weather = weather;
+        this.detail = detail;
+    }
+
+    /**
+     * Gets the position of this entry in the trace, counting from the first entry ever recorded.
+     *
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Gets the time the entry was recorded.
+     *
+     * @return epoch millis
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Gets the kind of decision recorded.
+     *
+     * @return the trace kind
+     */
+    public TraceKind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the world or city the entry is about.
+     *
+     * @return a world name, city name or profile name
+     */
+    public String getSubject() {
+        return subject;
+    }
+
+    /**
+     * Gets the settings profile involved.
+     *
+     * @return a profile name, or null for fetches
+     */
+    public String getProfileName() {
+        return profileName;
+    }
+
+    /**
+     * Gets the numeric value of the entry, which is the applied gametime for syncs
+     * and the request latency in millis for fetches, including not modified answers.
+     *
+     * @return the value, or -1 if nothing was applied or requested
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the applied or fetched weather state.
+     *
+     * @return the weather state, or null if none
+     */
+    public WeatherState getWeather() {
+        return weather;
+    }
+
+    /**
+     * Gets a short detail, such as the endpoint or the reason of a failure.
+     *
+     * @return the detail, or null if none
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    /**
+     * Tests if the entry is about the given world, city or profile.
+     *
+     * @param name a world, city or profile name
+     *
+     * @return true if the entry matches the name
+     */
+    public boolean matches(String name) {
+        return name.equals(subject) || name.equals(profileName);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(LocalDateTime.ofInstant(Instant.ofEpochMilli(timeMillis), RealTimePlugin.getInstance().clock.getZone()).format(TIME_FORMAT));
+        text.append(' ').append(kind).append(' ').append(subject);
+        if (profileName != null) {
+            text.append(" (").append(profileName).append(')');
+        }
+        if (value >= 0) {
+            boolean fetch = kind == TraceKind.FETCH || kind == TraceKind.FETCH_FAILED || kind == TraceKind.FETCH_SKIPPED;
+            text.append(fetch ? " latency=" : " gametime=").append(value);
+        }
+        if (weather != null) {
+            text.append(" weather=").append(weather);
+        }
+        if (detail != null) {
+            text.append(' ').append(detail);
+        }
+        return text.toString();
+    }
+}
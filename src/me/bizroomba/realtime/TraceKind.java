@@ -0,0 +1,31 @@
+package me.bizroomba.realtime;
+
+/**
+ * The kinds of decisions recorded in the sync trace.
+ */
+public enum TraceKind {
+    /**
+     * A profile's gametime was computed during a forced sync.
+     */
+    CLOCK,
+    /**
+     * A world's day phase or weather was changed by the regular sync, or a world was synced by a forced sync.
+     */
+    SYNC,
+    /**
+     * A suspended world was caught up when a player entered it.
+     */
+    CATCH_UP,
+    /**
+     * A city's weather was fetched.
+     */
+    FETCH,
+    /**
+     * A city's weather could not be fetched or parsed.
+     */
+    FETCH_FAILED,
+    /**
+     * A city's weather fetch was skipped by the circuit breaker or quota, or its answer was not modified.
+     */
+    FETCH_SKIPPED
+}
@@ -0,0 +1,134 @@
+package me.bizroomba.realtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the weather fetches publish their results for the main thread, without scheduling a task per result.
+ * Fetch threads replace a city's latest result and then bump the board's version. Once per tick the main thread
+ * compares the version with the one it last saw, and only when it moved looks for the results it hasn't applied yet.
+ * Because the version is bumped after the result is in place, a result is never missed: either it is seen
+ * by the current pass, or its bump makes the next pass look again.
+ */
+public final class WeatherBoard {
+
+    private final Map<String, Result> results = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    // only used on the main thread
+    private final Map<String, Result> applied = new HashMap<>();
+    private long seenVersion = 0;
+
+    /**
+     * Publishes a city's fetched weather, replacing any result not applied yet.
+     * This can be called from any thread.
+     *
+     * @param cityName the fetched city
+     * @param weather  the city's weather state
+     * @param forecast the city's forecast, or null if only the current weather was fetched
+     * @param coords   the city's latitude and longitude, or null if unknown
+     */
+    public void publish(String cityName, WeatherState weather, WeatherForecast forecast, double[] coords) {
+        results.put(cityName, new Result(cityName, weather, forecast, coords));
+        version.incrementAndGet();
+    }
+
+    /**
+     * Gets the version of the board, which moves whenever a result is published.
+     *
+     * @return the number of results published so far
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Takes the results published since the last call. This must be called from the main thread.
+     *
+     * @return the new results, or an empty list if nothing was published
+     */
+    public List<Result> takeChanges() {
+        long current = version.get();
+        if (current == seenVersion) {
+            return Collections.emptyList();
+        }
+        seenVersion = current;
+        List<Result> changes = new ArrayList<>();
+        for (Result result : results.values()) {
+            if (applied.get(result.cityName) != result) {
+                applied.put(result.cityName, result);
+                changes.add(result);
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Forgets the results of every city but the given ones. This must be called from the main thread.
+     *
+     * @param cityNames the cities whose results are kept
+     */
+    public void retainCities(Collection<String> cityNames) {
+        results.keySet().retainAll(cityNames);
+        applied.keySet().retainAll(cityNames);
+    }
+
+    /**
+     * A city's fetched weather. Immutable.
+     */
+    public static final class Result {
+
+        private final String cityName;
+        private final WeatherState weather;
+        private final WeatherForecast forecast;
+        private final double[] coords;
+
+        Result(String cityName, WeatherState weather, WeatherForecast forecast, double[] coords) {
+            this.cityName = cityName;
+            this.weather = weather;
+            this.forecast = forecast;
+            this.coords = coords;
+        }
+
+        /**
+         * Gets the fetched city.
+         *
+         * @return the city name
+         */
+        public String getCityName() {
+            return cityName;
+        }
+
+        /**
+         * Gets the city's weather.
+         *
+         * @return the weather state
+         */
+        public WeatherState getWeather() {
+            return weather;
+        }
+
+        /**
+         * Gets the city's forecast.
+         *
+         * @return the forecast, or null if only the current weather was fetched
+         */
+        public WeatherForecast getForecast() {
+            return forecast;
+        }
+
+        /**
+         * Gets the city's coordinates.
+         *
+         * @return the latitude and longitude, or null if unknown
+         */
+        public double[] getCoords() {
+            return coords;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package me.bizroomba.realtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event of a weather fetch. Only loaded through {@link FlightRecorder} when JFR is available.
+ */
+@Name("me.bizroomba.realtime.WeatherFetch")
+@Label("RealTime Weather Fetch")
+@Category("RealTime")
+@Description("A city's weather fetched and parsed off the main thread")
+@StackTrace(false)
+final class WeatherFetchEvent extends Event {
+
+    // checked before allocating, so a disabled event costs a field read
+    private static final EventType TYPE = EventType.getEventType(WeatherFetchEvent.class);
+
+    @Label("City")
+    String city;
+
+    @Label("Source")
+    @Description("The endpoint, and the provider if it wasn't the primary one")
+    String source;
+
+    @Label("Outcome")
+    String outcome;
+
+    @Label("Parse Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long parseTime;
+
+    static Object start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        WeatherFetchEvent event = new WeatherFetchEvent();
+        event.begin();
+        return event;
+    }
+
+    static void finish(Object started, String city, String source, String outcome, long parseNanos) {
+        WeatherFetchEvent event = (WeatherFetchEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.city = city;
+            event.source = source;
+            event.outcome = outcome;
+            event.parseTime = parseNanos;
+            event.commit();
+        }
+    }
+}
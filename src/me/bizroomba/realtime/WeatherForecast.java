@@ -0,0 +1,43 @@
+package me.bizroomba.realtime;
+
+import java.util.Arrays;
+
+/**
+ * An immutable timeline of forecasted weather states for a city.
+ * Each state holds from its start time until the start time of the next.
+ */
+public final class WeatherForecast {
+
+    private final long[] startMillis;
+    private final WeatherState[] states;
+
+    /**
+     * Creates a forecast from parallel arrays of start times and weather states.
+     *
+     * @param startMillis the epoch millis each state starts at, in ascending order
+     * @param states      the forecasted weather states
+     */
+    WeatherForecast(long[] startMillis, WeatherState[] states) {
+        if (startMillis.length != states.length || startMillis.length == 0) {
+            throw new IllegalArgumentException("forecast must have one state per start time");
+        }
+        this.startMillis = startMillis.clone();
+        this.states = states.clone();
+    }
+
+    /**
+     * Gets the forecasted weather state at the given time.
+     * Times before the forecast use its first state and times after it use its last state.
+     *
+     * @param epochMillis the epoch millis
+     *
+     * @return the forecasted weather state
+     */
+    public WeatherState stateAt(long epochMillis) {
+        int idx = Arrays.binarySearch(startMillis, epochMillis);
+        if (idx < 0) {
+            idx = Math.max(0, -idx - 2);
+        }
+        return states[idx];
+    }
+}
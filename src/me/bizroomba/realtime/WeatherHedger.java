@@ -0,0 +1,246 @@
+package me.bizroomba.realtime;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Sends weather requests to a primary provider and, when it is slow or fails, hedges them
+ * with the same request to a secondary provider. The hedge is sent once the primary hasn't
+ * answered within its 95th percentile response time, so only the slowest requests are hedged.
+ * The first good answer wins. A losing hedge request is cancelled: if it is blocked on the network it stops
+ * at its next read or timeout, and its answer is ignored. A losing primary request is left to finish, so its
+ * real response time is recorded and its outcome still reaches the caller, for example its circuit breaker.
+ * Answers served from a local cache without a request are never timed.
+ * This is used from spigot's async tasks.
+ */
+public final class WeatherHedger implements Closeable {
+
+    /**
+     * The hedge delay until the primary provider has enough recorded response times.
+     */
+    public static final long DEFAULT_DELAY_MILLIS = 1500L;
+
+    private static final long MIN_DELAY_MILLIS = 200L;
+    private static final long MAX_DELAY_MILLIS = 5000L;
+    private static final long MAX_WAIT_MILLIS = 30_000L;
+    private static final int LATENCY_SAMPLES = 128;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "RealTime weather request");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, LatencyStats> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the recorded response times of a provider.
+     *
+     * @param providerName the provider's name
+     *
+     * @return the provider's latency stats
+     */
+    public LatencyStats getLatency(String providerName) {
+        return latencies.computeIfAbsent(providerName, k -> new LatencyStats(LATENCY_SAMPLES));
+    }
+
+    /**
+     * Gets how long a request to a provider is given before it is hedged.
+     *
+     * @param providerName the provider's name
+     *
+     * @return the provider's clamped p95 response time, or the default until it is known
+     */
+    public long getHedgeDelayMillis(String providerName) {
+        long p95 = getLatency(providerName).percentile(0.95);
+        if (p95 < 0) {
+            return DEFAULT_DELAY_MILLIS;
+        }
+        return Math.max(MIN_DELAY_MILLIS, Math.min(MAX_DELAY_MILLIS, p95));
+    }
+
+    /**
+     * Requests weather data, hedging with the secondary provider if the primary is slow or fails.
+     * Blocks until a good answer arrives or both providers failed.
+     *
+     * @param primary   the primary provider
+     * @param secondary the secondary provider
+     * @param endpoint  the api endpoint
+     * @param apiKey    the primary provider's api key
+     * @param cityName  the city to fetch the weather for
+     * @param isGood    tests if an answer is usable
+     * @param onPrimary told if the primary's answer was good once it arrives, even when the secondary won
+     *
+     * @return the winning answer, or a failed answer from the primary
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public Answer request(Provider primary, Provider secondary, String endpoint, String apiKey, String cityName,
+                          Predicate<String> isGood, Consumer<Boolean> onPrimary) throws InterruptedException {
+        CompletableFuture<Answer> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(1);
+        AtomicBoolean hedged = new AtomicBoolean(false);
+        AtomicReferenceArray<Future<?>> attempts = new AtomicReferenceArray<>(2);
+
+        Runnable hedge = () -> {
+            if (!winner.isDone() && hedged.compareAndSet(false, true)) {
+                remaining.incrementAndGet();
+                attempts.set(1, executor.submit(() -> attempt(secondary, endpoint, apiKey, cityName, isGood, winner, remaining, null, null, true)));
+            }
+        };
+        attempts.set(0, executor.submit(() -> attempt(primary, endpoint, apiKey, cityName, isGood, winner, remaining, hedge, onPrimary, false)));
+
+        try {
+            try {
+                return winner.get(getHedgeDelayMillis(primary.getName()), TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e) {
+                hedge.run();
+            }
+            try {
+                return winner.get(MAX_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            catch (TimeoutException e) {
+                cancel(attempts.get(0));
+                return new Answer("", primary.getName(), false);
+            }
+        }
+        catch (ExecutionException e) {
+            return new Answer("", primary.getName(), false);
+        }
+        finally {
+            cancel(attempts.get(1));
+        }
+    }
+
+    private static void cancel(Future<?> attempt) {
+        if (attempt != null) {
+            attempt.cancel(true);
+        }
+    }
+
+    private void attempt(Provider provider, String endpoint, String apiKey, String cityName, Predicate<String> isGood,
+                         CompletableFuture<Answer> winner, AtomicInteger remaining, Runnable onFailure,
+                         Consumer<Boolean> onOutcome, boolean secondary) {
+        long startNanos = System.nanoTime();
+        String json = provider.request(endpoint, apiKey, cityName);
+        if (Thread.currentThread().isInterrupted()) {
+            // a cancelled hedge lost the race, and a cancelled primary took too long
+            if (onOutcome != null) {
+                onOutcome.accept(false);
+            }
+            return;
+        }
+        boolean good = isGood.test(json);
+        if (good && !json.equals(WeatherProvider.FRESH)) {
+            getLatency(provider.getName()).record((System.nanoTime() - startNanos) / 1_000_000L);
+        }
+        if (onOutcome != null) {
+            onOutcome.accept(good);
+        }
+        if (good) {
+            winner.complete(new Answer(json, provider.getName(), secondary));
+        }
+        else if (onFailure != null) {
+            onFailure.run();
+        }
+        if (remaining.decrementAndGet() == 0) {
+            winner.complete(new Answer("", provider.getName(), false));
+        }
+    }
+
+    /**
+     * Stops the request threads.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A named weather provider.
+     */
+    public static final class Provider {
+
+        private final String name;
+        private final WeatherProvider provider;
+
+        /**
+         * Names a weather provider.
+         *
+         * @param name     the name its latency is recorded under
+         * @param provider the provider
+         */
+        public Provider(String name, WeatherProvider provider) {
+            this.name = name;
+            this.provider = provider;
+        }
+
+        /**
+         * Gets the provider's name.
+         *
+         * @return the name its latency is recorded under
+         */
+        public String getName() {
+            return name;
+        }
+
+        String request(String endpoint, String apiKey, String cityName) {
+            return provider.request(endpoint, apiKey, cityName);
+        }
+    }
+
+    /**
+     * The answer of a hedged request.
+     */
+    public static final class Answer {
+
+        private final String json;
+        private final String providerName;
+        private final boolean secondary;
+
+        Answer(String json, String providerName, boolean secondary) {
+            this.json = json;
+            this.providerName = providerName;
+            this.secondary = secondary;
+        }
+
+        /**
+         * Gets the json weather data in the openweathermap.org format.
+         *
+         * @return the json weather data, or empty if every provider failed
+         */
+        public String getJson() {
+            return json;
+        }
+
+        /**
+         * Gets the provider that answered.
+         *
+         * @return the provider's name
+         */
+        public String getProviderName() {
+            return providerName;
+        }
+
+        /**
+         * Tests if the answer came from the secondary provider.
+         *
+         * @return true if the hedge request won
+         */
+        public boolean isSecondary() {
+            return secondary;
+        }
+    }
+}
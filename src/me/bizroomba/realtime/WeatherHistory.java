@@ -0,0 +1,290 @@
+package me.bizroomba.realtime;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An append-only log of every city's real life weather, kept in the data folder.
+ * Each city has a directory of monthly segments, and each entry of a segment is five bytes:
+ * the seconds since the start of the month and the weather state. An entry is appended when
+ * a city's weather changes, and at least once an hour while it doesn't, so gaps in the log show
+ * when the weather was unknown. Appends happen in order on a background thread, while reads
+ * binary search memory-mapped segments and can happen from any thread.
+ */
+public final class WeatherHistory implements Closeable {
+
+    /**
+     * A recorded state is not trusted for moments more than this many seconds after it.
+     */
+    public static final long MAX_GAP_SECONDS = 7200L;
+
+    private static final int MAGIC = 0x52545748;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 5;
+    private static final long HEARTBEAT_SECONDS = 3600L;
+    private static final int MAX_MAPPED_SEGMENTS = 64;
+    private static final DateTimeFormatter SEGMENT_NAME = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    private final File directory;
+    private final Logger logger;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "RealTime weather history writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // only used by the writer thread
+    private final Map<String, Entry> lastEntries = new HashMap<>();
+    private final Map<File, Segment> segments = new ConcurrentHashMap<>();
+    // the last entry handed to the writer for each city, so a repeated record costs a lookup
+    private final Map<String, Entry> recorded = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the weather history in a directory, creating it when first written.
+     *
+     * @param directory the history's directory
+     * @param logger    where failed appends are reported
+     */
+    public WeatherHistory(File directory, Logger logger) {
+        this.directory = directory;
+        this.logger = logger;
+    }
+
+    /**
+     * Records a city's weather in the background. Nothing is appended when the weather is the same
+     * as the last entry and that entry is less than an hour old.
+     *
+     * @param cityName     the city
+     * @param weather      the city's weather state
+     * @param epochSeconds when the weather was observed
+     */
+    public void record(String cityName, WeatherState weather, long epochSeconds) {
+        Entry previous = recorded.get(cityName);
+        if (previous != null && previous.weather == weather && epochSeconds - previous.epochSeconds < HEARTBEAT_SECONDS) {
+            return;
+        }
+        recorded.put(cityName, new Entry(epochSeconds, weather));
+        writer.execute(() -> {
+            File cityDir = getCityDirectory(cityName);
+            Entry last = lastEntries.computeIfAbsent(cityDir.getName(), k -> latestEntry(cityDir));
+            long seconds = last != null ? Math.max(epochSeconds, last.epochSeconds) : epochSeconds;
+            if (last != null && last.weather == weather && seconds - last.epochSeconds < HEARTBEAT_SECONDS) {
+                return;
+            }
+            try {
+                append(cityDir, weather, seconds);
+                lastEntries.put(cityDir.getName(), new Entry(seconds, weather));
+            }
+            catch (IOException e) {
+                logger.log(Level.WARNING, "Could not record the weather of " + cityName, e);
+            }
+        });
+    }
+
+    private void append(File cityDir, WeatherState weather, long epochSeconds) throws IOException {
+        YearMonth month = YearMonth.from(Instant.ofEpochSecond(epochSeconds).atOffset(ZoneOffset.UTC));
+        long base = month.atDay(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+        File segmentFile = new File(cityDir, month.format(SEGMENT_NAME) + ".wlog");
+        if (!cityDir.isDirectory() && !cityDir.mkdirs()) {
+            throw new IOException("Could not create " + cityDir.getPath());
+        }
+
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE);
+        if (segmentFile.length() < HEADER_SIZE) {
+            bytes.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(base);
+        }
+        bytes.putInt((int) (epochSeconds - base)).put((byte) weather.ordinal());
+        bytes.flip();
+        try (FileChannel channel = FileChannel.open(segmentFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Gets the recorded weather of a city at a moment.
+     *
+     * @param cityName     the city
+     * @param epochSeconds the moment
+     *
+     * @return the weather state, or null if nothing was recorded in the two hours up to the moment
+     */
+    public WeatherState weatherAt(String cityName, long epochSeconds) {
+        File cityDir = getCityDirectory(cityName);
+        YearMonth month = YearMonth.from(Instant.ofEpochSecond(epochSeconds).atOffset(ZoneOffset.UTC));
+        Entry entry = findEntry(new File(cityDir, month.format(SEGMENT_NAME) + ".wlog"), epochSeconds);
+        if (entry == null) {
+            // the last entry of the previous month may still cover the start of this one
+            entry = findEntry(new File(cityDir, month.minusMonths(1).format(SEGMENT_NAME) + ".wlog"), epochSeconds);
+        }
+        if (entry == null || epochSeconds - entry.epochSeconds > MAX_GAP_SECONDS) {
+            return null;
+        }
+        return entry.weather;
+    }
+
+    /**
+     * Gets the most recently recorded weather of a city, for when it can't be fetched.
+     *
+     * @param cityName     the city
+     * @param epochSeconds the current moment
+     *
+     * @return the weather state, or null if nothing was recorded in the last two hours
+     */
+    public WeatherState latestWeather(String cityName, long epochSeconds) {
+        Entry entry = latestEntry(getCityDirectory(cityName));
+        if (entry == null || epochSeconds - entry.epochSeconds > MAX_GAP_SECONDS) {
+            return null;
+        }
+        return entry.weather;
+    }
+
+    private Entry latestEntry(File cityDir) {
+        String[] names = cityDir.list((dir, name) -> name.endsWith(".wlog"));
+        if (names == null || names.length == 0) {
+            return null;
+        }
+        String newest = names[0];
+        for (String name : names) {
+            if (name.compareTo(newest) > 0) {
+                newest = name;
+            }
+        }
+        return findEntry(new File(cityDir, newest), Long.MAX_VALUE);
+    }
+
+    /**
+     * Binary searches a segment for its last entry at or before a moment.
+     */
+    private Entry findEntry(File segmentFile, long epochSeconds) {
+        Segment segment = mapSegment(segmentFile);
+        if (segment == null || segment.count == 0) {
+            return null;
+        }
+        long target = epochSeconds - segment.base;
+        int lo = 0;
+        int hi = segment.count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (segment.buffer.getInt(HEADER_SIZE + mid * ENTRY_SIZE) <= target) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        if (lo == 0) {
+            return null;
+        }
+        int offset = HEADER_SIZE + (lo - 1) * ENTRY_SIZE;
+        int state = segment.buffer.get(offset + 4);
+        WeatherState[] states = WeatherState.values();
+        if (state < 0 || state >= states.length) {
+            return null;
+        }
+        return new Entry(segment.base + segment.buffer.getInt(offset), states[state]);
+    }
+
+    /**
+     * Maps a segment, reusing its mapping unless entries were appended since.
+     */
+    private Segment mapSegment(File segmentFile) {
+        long length = segmentFile.length();
+        if (length < HEADER_SIZE) {
+            return null;
+        }
+        Segment segment = segments.get(segmentFile);
+        if (segment != null && segment.length == length) {
+            return segment;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(segmentFile, "r")) {
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION) {
+                return null;
+            }
+            segment = new Segment(length, buffer, buffer.getLong(8), (int) ((length - HEADER_SIZE) / ENTRY_SIZE));
+        }
+        catch (IOException e) {
+            return null;
+        }
+        if (segments.size() >= MAX_MAPPED_SEGMENTS) {
+            segments.clear();
+        }
+        segments.put(segmentFile, segment);
+        return segment;
+    }
+
+    private File getCityDirectory(String cityName) {
+        try {
+            return new File(directory, URLEncoder.encode(Gazetteer.normalize(cityName), "UTF-8"));
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Finishes the pending appends.
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(10, TimeUnit.SECONDS)) {
+                logger.warning("Gave up waiting for the weather history to be written");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segments.clear();
+    }
+
+    private static final class Entry {
+
+        private final long epochSeconds;
+        private final WeatherState weather;
+
+        Entry(long epochSeconds, WeatherState weather) {
+            this.epochSeconds = epochSeconds;
+            this.weather = weather;
+        }
+    }
+
+    private static final class Segment {
+
+        private final long length;
+        private final MappedByteBuffer buffer;
+        private final long base;
+        private final int count;
+
+        Segment(long length, MappedByteBuffer buffer, long base, int count) {
+            this.length = length;
+            this.buffer = buffer;
+            this.base = base;
+            this.count = count;
+        }
+    }
+}
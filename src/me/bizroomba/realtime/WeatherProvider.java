@@ -0,0 +1,35 @@
+package me.bizroomba.realtime;
+
+/**
+ * A source of json weather data in the openweathermap.org format.
+ * The plugin requests its weather through the provider it holds, so it can be replaced,
+ * for example by a stub in the sync simulator.
+ */
+@FunctionalInterface
+public interface WeatherProvider {
+
+    /**
+     * Returned instead of the json weather data when it is the same as the last data for the request,
+     * so the caller can keep what it has without parsing it again.
+     */
+    String NOT_MODIFIED = "not modified";
+
+    /**
+     * Returned instead of the json weather data when the last data for the request may still be reused,
+     * so no request was sent. Like {@link #NOT_MODIFIED}, but it says nothing about the provider's response time.
+     */
+    String FRESH = "fresh";
+
+    /**
+     * Requests the json weather data for a city.
+     * This function is run asynchronously from spigot.
+     *
+     * @param endpoint the api endpoint, either "weather" for the current weather or "forecast"
+     * @param apiKey   the api key used to access the weather data
+     * @param cityName the city to fetch the weather for
+     *
+     * @return the json weather data, {@link #NOT_MODIFIED} if it didn't change, {@link #FRESH} if it wasn't requested
+     * because the last data is still fresh, or an empty string if the request failed
+     */
+    String request(String endpoint, String apiKey, String cityName);
+}
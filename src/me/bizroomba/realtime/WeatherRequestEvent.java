@@ -0,0 +1,67 @@
+package me.bizroomba.realtime;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR event of a weather HTTP request. Only loaded through {@link FlightRecorder} when JFR is available.
+ */
+@Name("me.bizroomba.realtime.WeatherRequest")
+@Label("RealTime Weather Request")
+@Category("RealTime")
+@Description("A single HTTP request to a weather provider")
+@StackTrace(false)
+final class WeatherRequestEvent extends Event {
+
+    // checked before allocating, so a disabled event costs a field read
+    private static final EventType TYPE = EventType.getEventType(WeatherRequestEvent.class);
+
+    @Label("City")
+    String city;
+
+    @Label("Request")
+    @Description("The provider and endpoint of the request")
+    String request;
+
+    @Label("HTTP Status")
+    int status;
+
+    @Label("Bytes Received")
+    @DataAmount
+    long bytes;
+
+    @Label("Gzip")
+    boolean gzip;
+
+    @Label("Outcome")
+    String outcome;
+
+    static Object start() {
+        if (!TYPE.isEnabled()) {
+            return null;
+        }
+        WeatherRequestEvent event = new WeatherRequestEvent();
+        event.begin();
+        return event;
+    }
+
+    static void finish(Object started, String city, String request, int status, long bytes, boolean gzip, String outcome) {
+        WeatherRequestEvent event = (WeatherRequestEvent) started;
+        event.end();
+        if (event.shouldCommit()) {
+            event.city = city;
+            event.request = request;
+            event.status = status;
+            event.bytes = bytes;
+            event.gzip = gzip;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package me.bizroomba.realtime;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Decides when each city's weather is refreshed.
+ * Cities with players in their worlds are refreshed every fetch period, while idle
+ * cities back off exponentially, or aren't refreshed at all when fetching on demand. Refresh times are jittered so cities don't fetch on the same tick,
+ * and when the quota runs low the cities with players are served first.
+ * This is only used from the main thread.
+ */
+public final class WeatherScheduler {
+
+    /**
+     * The idle cities' refresh period is at most the fetch period times two to the power of this.
+     */
+    public static final int MAX_IDLE_LEVEL = 3;
+
+    private static final double JITTER = 0.1;
+    private static final long MAX_INITIAL_DELAY_MILLIS = 60_000L;
+
+    private final Map<String, Long> nextFetchTimes = new HashMap<>();
+    private final Map<String, Long> lastFetchTimes = new HashMap<>();
+    private final Map<String, Integer> idleLevels = new HashMap<>();
+    private final Random random = new Random();
+
+    /**
+     * Picks the cities that are due for a refresh and takes a quota token for each of them,
+     * rescheduling their next refresh.
+     *
+     * @param cityNames    every city that should have weather
+     * @param activeCities the cities with players in their worlds
+     * @param periodMillis the fetch period of an active city
+     * @param nowMillis    the current epoch millis
+     * @param quota        the api quota
+     * @param onDemand     true if idle cities shouldn't be fetched at all
+     *
+     * @return the cities to fetch now
+     */
+    public List<String> pollDue(Collection<String> cityNames, Set<String> activeCities, long periodMillis, long nowMillis, FetchQuota quota, boolean onDemand) {
+        nextFetchTimes.keySet().retainAll(cityNames);
+        lastFetchTimes.keySet().retainAll(cityNames);
+        idleLevels.keySet().retainAll(cityNames);
+
+        List<String> dueCities = new ArrayList<>();
+        for (String cityName : cityNames) {
+            Long nextFetch = nextFetchTimes.get(cityName);
+            if (nextFetch == null) {
+                // spread the first fetches out instead of bursting them all at once
+                nextFetch = nowMillis + (long) (random.nextDouble() * Math.min(periodMillis, MAX_INITIAL_DELAY_MILLIS));
+                nextFetchTimes.put(cityName, nextFetch);
+            }
+            if (!activeCities.contains(cityName)) {
+                if (onDemand) {
+                    continue;
+                }
+            }
+            else {
+                if (idleLevels.getOrDefault(cityName, 0) > 0) {
+                    // a city that became active shouldn't wait out its idle backoff
+                    idleLevels.put(cityName, 0);
+                    nextFetch = Math.min(nextFetch, nowMillis);
+                }
+            }
+            if (nextFetch <= nowMillis) {
+                dueCities.add(cityName);
+            }
+        }
+        dueCities.sort(Comparator.comparing((String cityName) -> !activeCities.contains(cityName))
+                .thenComparing(nextFetchTimes::get));
+
+        List<String> fetchCities = new ArrayList<>();
+        for (String cityName : dueCities) {
+            if (!quota.tryAcquire(nowMillis)) {
+                break;
+            }
+            int idleLevel = idleLevels.getOrDefault(cityName, 0);
+            if (!activeCities.contains(cityName)) {
+                idleLevel = Math.min(MAX_IDLE_LEVEL, idleLevel + 1);
+                idleLevels.put(cityName, idleLevel);
+            }
+            reschedule(cityName, periodMillis << idleLevel, nowMillis);
+            fetchCities.add(cityName);
+        }
+        return fetchCities;
+    }
+
+    /**
+     * Takes a quota token for a city whose cached weather is older than the fetch period
+     * and reschedules its next refresh, so it can be fetched immediately.
+     *
+     * @param cityName     the city a player is entering
+     * @param periodMillis the fetch period of an active city
+     * @param nowMillis    the current epoch millis
+     * @param quota        the api quota
+     *
+     * @return true if the city should be fetched now
+     */
+    public boolean pollStale(String cityName, long periodMillis, long nowMillis, FetchQuota quota) {
+        Long lastFetch = lastFetchTimes.get(cityName);
+        if (lastFetch != null && nowMillis - lastFetch < periodMillis) {
+            return false;
+        }
+        if (!quota.tryAcquire(nowMillis)) {
+            return false;
+        }
+        idleLevels.put(cityName, 0);
+        reschedule(cityName, periodMillis, nowMillis);
+        return true;
+    }
+
+    private void reschedule(String cityName, long interval, long nowMillis) {
+        long jitter = (long) ((random.nextDouble() * 2 - 1) * JITTER * interval);
+        nextFetchTimes.put(cityName, nowMillis + interval + jitter);
+        lastFetchTimes.put(cityName, nowMillis);
+    }
+
+    /**
+     * Forgets every city's schedule so they are fetched again soon.
+     */
+    public void clear() {
+        nextFetchTimes.clear();
+        lastFetchTimes.clear();
+        idleLevels.clear();
+    }
+}
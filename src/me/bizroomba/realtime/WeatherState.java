@@ -35,6 +35,17 @@ public enum WeatherState {
      */
     public abstract void applyTo(World world);
 
+    /**
+     * Tests if the chosen world already shows this weather state.
+     *
+     * @param world a loaded world
+     *
+     * @return true if applying this state would change nothing
+     */
+    public boolean isShownBy(World world) {
+        return world.hasStorm() == (this != CLEAR) && world.isThundering() == (this == THUNDER);
+    }
+
     /**
      * Determins the weather state from a weather description.
      * The word "thunder" signals THUNDER.
@@ -0,0 +1,99 @@
+package me.bizroomba.realtime;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the settings profiles and world assignments in the plugin's config
+ * under "settings" and "worlds". They are saved along with the rest of the config.
+ */
+public final class YamlSettingsStore implements SettingsStore {
+
+    private final RealTimePlugin plugin;
+
+    YamlSettingsStore(RealTimePlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    private FileConfiguration getConfig() {
+        return plugin.getConfig();
+    }
+
+    @Override
+    public boolean getBoolean(String profileName, String key, boolean def) {
+        return getConfig().getBoolean("settings." + profileName + "." + key, def);
+    }
+
+    @Override
+    public long getLong(String profileName, String key, long def) {
+        return getConfig().getLong("settings." + profileName + "." + key, def);
+    }
+
+    @Override
+    public double getDouble(String profileName, String key, double def) {
+        return getConfig().getDouble("settings." + profileName + "." + key, def);
+    }
+
+    @Override
+    public String getString(String profileName, String key) {
+        return getConfig().getString("settings." + profileName + "." + key);
+    }
+
+    @Override
+    public void setValue(String profileName, String key, Object value) {
+        getConfig().set("settings." + profileName + "." + key, value);
+    }
+
+    @Override
+    public void clearProfile(String profileName) {
+        getConfig().set("settings." + profileName, null);
+    }
+
+    @Override
+    public List<String> getProfileNames() {
+        List<String> profileNames = new ArrayList<>();
+        ConfigurationSection yamlSettings = getConfig().getConfigurationSection("settings");
+        if (yamlSettings != null) {
+            profileNames.addAll(yamlSettings.getKeys(false));
+        }
+        return profileNames;
+    }
+
+    @Override
+    public String getProfileNameFor(String worldName) {
+        return getConfig().getString("worlds." + worldName);
+    }
+
+    @Override
+    public void setProfileFor(String worldName, String profileName) {
+        getConfig().set("worlds." + worldName, profileName);
+    }
+
+    @Override
+    public List<String> getWorldNames() {
+        List<String> worldNames = new ArrayList<>();
+        ConfigurationSection yamlWorlds = getConfig().getConfigurationSection("worlds");
+        if (yamlWorlds != null) {
+            worldNames.addAll(yamlWorlds.getKeys(false));
+        }
+        return worldNames;
+    }
+
+    @Override
+    public List<String> getWorldNamesFor(String profileName) {
+        List<String> worldNames = new ArrayList<>();
+        for (String worldName : getWorldNames()) {
+            if (profileName.equals(getProfileNameFor(worldName))) {
+                worldNames.add(worldName);
+            }
+        }
+        return worldNames;
+    }
+
+    @Override
+    public void close() {
+    }
+}